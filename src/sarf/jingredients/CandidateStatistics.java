@@ -0,0 +1,59 @@
+package sarf.jingredients;
+
+/**
+ * The numbers of jar files and hash values examined by an analysis of a target.
+ * They show the effect of a stop-list on the comparison.
+ */
+public class CandidateStatistics {
+
+	private int candidateCount;
+	private int stopNameCount;
+	private int stopCodeCount;
+	private long skippedOccurrences;
+
+	/**
+	 * @return the number of jar files whose intersections with the target were computed.
+	 * Jar files identical to the target are not included.
+	 */
+	public int getCandidateCount() {
+		return candidateCount;
+	}
+
+	/**
+	 * @return the number of class names of the target excluded by the stop-list.
+	 */
+	public int getStopNameCount() {
+		return stopNameCount;
+	}
+
+	/**
+	 * @return the number of classes of the target whose signatures are excluded by the stop-list.
+	 */
+	public int getStopCodeCount() {
+		return stopCodeCount;
+	}
+
+	/**
+	 * @return the total number of jar files including the excluded class names.
+	 * This is the number of comparisons skipped by the stop-list.
+	 */
+	public long getSkippedOccurrences() {
+		return skippedOccurrences;
+	}
+
+	void setCandidateCount(int candidateCount) {
+		this.candidateCount = candidateCount;
+	}
+
+	void setStopList(int stopNameCount, int stopCodeCount, long skippedOccurrences) {
+		this.stopNameCount = stopNameCount;
+		this.stopCodeCount = stopCodeCount;
+		this.skippedOccurrences = skippedOccurrences;
+	}
+
+	@Override
+	public String toString() {
+		return candidateCount + " candidate jar files; stop-list excluded " + stopNameCount + " class names (" + skippedOccurrences + " occurrences in the database) and " + stopCodeCount + " signatures";
+	}
+
+}
@@ -0,0 +1,82 @@
+package sarf.jingredients;
+
+import java.io.File;
+import java.io.IOException;
+
+import sarf.jingredients.db.ClassHashSetReader;
+import sarf.jingredients.db.MappedClassHashSetWriter;
+import sarf.jingredients.hash.ClassHashSet;
+import sarf.jingredients.model.ComponentEntry;
+
+public class ConvertDB {
+
+	/**
+	 * Convert "*.bin" signature files created by CreateDB
+	 * into the format for MappedClassHashSetList.
+	 * "-dictionary" additionally creates files for DictionaryClassHashSetList.
+	 * "-fingerprint" additionally creates fingerprint files.
+	 * Set hash files, digest files, document frequency files and MinHash files are created if they do not exist.
+	 * The original files are not removed.
+	 */
+	public static void main(String[] args) {
+		long t = System.currentTimeMillis();
+		if (args.length < 1) {
+			System.out.println("Usage: ConvertDB [-dictionary] [-fingerprint] db-name [db-name ...]");
+			return;
+		}
+		try {
+			boolean dictionary = false;
+			boolean fingerprint = false;
+			for (String dbname: args) {
+				if (dbname.equalsIgnoreCase("-dictionary")) {
+					dictionary = true;
+					continue;
+				} else if (dbname.equalsIgnoreCase("-fingerprint")) {
+					fingerprint = true;
+					continue;
+				}
+				for (int i=0; i<CreateDB.SignatureTypeName.length; ++i) {
+					File input = new File(dbname + CreateDB.SignatureTypeName[i]);
+					if (input.exists()) {
+						File output = new File(dbname + CreateDB.MappedSignatureTypeName[i]);
+						int count = convert(input, output);
+						System.out.println(count + " sets: " + input.getAbsolutePath() + " -> " + output.getAbsolutePath());
+						if (i != ComponentEntry.SIG_CLASSNAME && !new File(dbname + CreateDB.SetHashTypeName[i]).exists()) {
+							CreateDB.createSetHash(dbname, i);
+						}
+						if (!new File(dbname + CreateDB.DigestTypeName[i]).exists()) {
+							CreateDB.createDigest(dbname, i);
+						}
+						if (!new File(dbname + CreateDB.FrequencyTypeName[i]).exists()) {
+							CreateDB.createDocumentFrequency(dbname, i);
+						}
+						if (i == ComponentEntry.SIG_BERTILLONAGE && !new File(dbname + CreateDB.MinHashTypeName[i]).exists()) {
+							CreateDB.createMinHash(dbname, i);
+						}
+						if (dictionary) {
+							CreateDB.createDictionary(dbname, i);
+						}
+						if (fingerprint) {
+							CreateDB.createFingerprint(dbname, i);
+						}
+					}
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		System.out.println(System.currentTimeMillis() - t);
+	}
+
+	public static int convert(File input, File output) throws IOException {
+		MappedClassHashSetWriter w = new MappedClassHashSetWriter(output);
+		ClassHashSetReader in = new ClassHashSetReader(input);
+		for (ClassHashSet set = in.next(); set != null; set = in.next()) {
+			w.add(set);
+		}
+		in.close();
+		w.close();
+		return w.size();
+	}
+
+}
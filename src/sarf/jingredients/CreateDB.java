@@ -1,119 +1,344 @@
-package sarf.jingredients;
-
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.IOException;
-import java.io.LineNumberReader;
-import java.io.ObjectOutputStream;
-import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.zip.GZIPOutputStream;
-
-import sarf.jingredients.hash.ClassHash;
-import sarf.jingredients.hash.ClassHashSet;
-import sarf.jingredients.model.Component;
-import sarf.jingredients.util.Concurrent;
-
-public class CreateDB {
-	
-	public static String FileList = ".txt";
-	public static String PackageSetList = ".packages.bin";
-	public static String[] SignatureTypeName = { ".cname.bin", ".code.bin", ".file.bin", ".bert.bin" };
-	
-
-	public static void main(String[] args) {
-		long t = System.currentTimeMillis();
-		if (args.length < 3) {
-			System.out.println("Usage: CreateDB jar-file-list db-name num-threads [-full]");
-			return;
-		}
-
-		int numThreads = Integer.parseInt(args[2]);
-		Concurrent concurrent = new Concurrent(numThreads);
-		
-		// by default, ".cname" and ".code" databases (that are necessary for JIngredients) are created but
-		// skip the generation of databases for Software Bertillonage.
-		final boolean[] skipHashOutput = new boolean[SignatureTypeName.length];
-		skipHashOutput[2] = true;
-		skipHashOutput[3] = true;
-		
-		if (args.length >= 4) {
-			if (args[3].equalsIgnoreCase("-full")) {
-				skipHashOutput[ 2 ] = false;
-				skipHashOutput[ 3 ] = false;
-			}
-		}
-			
-		try {
-			String outputFilename = args[1];
-			
-			final PrintWriter w = new PrintWriter(new File(outputFilename + FileList));
-			LineNumberReader reader = new LineNumberReader(new FileReader(new File(args[0])));
-
-			final ObjectOutputStream packageInfoStream = new ObjectOutputStream(new FileOutputStream(new File(outputFilename + PackageSetList)));
-
-			final ObjectOutputStream[] out = new ObjectOutputStream[SignatureTypeName.length];
-			for (int i=0; i<out.length; ++i) {
-				if (!skipHashOutput[i]) {
-					FileOutputStream f = new FileOutputStream(new File(outputFilename + SignatureTypeName[i]));
-					GZIPOutputStream gzipped = new GZIPOutputStream(f);
-					out[i] = new ObjectOutputStream(gzipped);
-				}
-			}
-
-			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-				final String filename = line;
-				concurrent.execute(new Runnable() {
-					@Override
-					public void run() {
-						Component c = Component.load(new File(filename), false);
-						if (c != null) {
-							@SuppressWarnings("unchecked")
-							ArrayList<ClassHash>[] sets = new ArrayList[SignatureTypeName.length];
-							for (int i=0; i<SignatureTypeName.length; ++i) {
-								if (!skipHashOutput[i]) {
-									sets[i] = c.createHashList(i);
-								}
-							}
-							
-							ClassHash phash = c.getPackageSetHash();
-							synchronized (w) {
-								w.println(filename);
-								try {
-									phash.writeTo(packageInfoStream);
-									for (int i=0; i<SignatureTypeName.length; ++i) {
-										if (!skipHashOutput[i]) {
-											ClassHashSet.writeToStream(out[i], sets[i]);
-										}
-									}
-								} catch (IOException e) {
-									e.printStackTrace();
-								}
-							}
-							System.out.print(".");
-						}
-					}
-				});
-			}
-			concurrent.waitComplete();
-			for (int i=0; i<SignatureTypeName.length; ++i) {
-				if (!skipHashOutput[i]) {
-					out[i].close();
-				}
-			}
-			reader.close();
-			packageInfoStream.close();
-			w.close();
-			System.out.println();
-			
-			System.out.println(System.currentTimeMillis() - t);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-	}
-	
-	
-
-
-}
+package sarf.jingredients;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+import gnu.trove.list.array.TLongArrayList;
+import sarf.jingredients.db.ClassHashSetList;
+import sarf.jingredients.db.DeltaClassHashSetWriter;
+import sarf.jingredients.db.DictionaryClassHashSetList;
+import sarf.jingredients.db.DocumentFrequency;
+import sarf.jingredients.db.InvertedIndex;
+import sarf.jingredients.db.MappedClassHashSetWriter;
+import sarf.jingredients.db.MinHashIndex;
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.hash.ClassHashSet;
+import sarf.jingredients.model.Component;
+import sarf.jingredients.model.ComponentEntry;
+import sarf.jingredients.util.Concurrent;
+
+public class CreateDB {
+	
+	public static String FileList = ".txt";
+	public static String PackageSetList = ".packages.bin";
+	public static String[] SignatureTypeName = { ".cname.bin", ".code.bin", ".file.bin", ".bert.bin" };
+	public static String[] MappedSignatureTypeName = { ".cname.map", ".code.map", ".file.map", ".bert.map" };
+	public static String[] IndexTypeName = { ".cname.idx", ".code.idx", ".file.idx", ".bert.idx" };
+	public static String[] DictionaryTypeName = { ".cname.dict", ".code.dict", ".file.dict", ".bert.dict" };
+	public static String[] IdTypeName = { ".cname.ids", ".code.ids", ".file.ids", ".bert.ids" };
+	public static String[] FingerprintTypeName = { ".cname.fp", ".code.fp", ".file.fp", ".bert.fp" };
+	public static String[] SetHashTypeName = { ".cname.sethash", ".code.sethash", ".file.sethash", ".bert.sethash" };
+	public static String[] FrequencyTypeName = { ".cname.df", ".code.df", ".file.df", ".bert.df" };
+	public static String[] MinHashTypeName = { ".cname.lsh", ".code.lsh", ".file.lsh", ".bert.lsh" };
+	public static String[] DigestTypeName = { ".cname.digest", ".code.digest", ".file.digest", ".bert.digest" };
+	
+	/**
+	 * A set hash file includes ClassHashSet.getSetHash() of each jar file (big endian):
+	 * int SETHASH_MAGIC, int SETHASH_VERSION, int the number of jar files, and then the hash values. 
+	 */
+	public static final int SETHASH_MAGIC = 0x4a495348; // "JISH"
+	public static final int SETHASH_VERSION = 1;
+	
+	/**
+	 * A digest file includes ClassHashSet.getContentDigest() of each jar file:
+	 * int DIGEST_MAGIC, int DIGEST_VERSION, int the number of jar files, and then 20-byte digests.
+	 * Database detects jar files having the same content without loading their sets.
+	 */
+	public static final int DIGEST_MAGIC = 0x4a494344; // "JICD"
+	public static final int DIGEST_VERSION = 1;
+	
+	/**
+	 * The number of LSH bands in a MinHash file.
+	 * More bands of fewer rows find jar files less similar to a target. 
+	 */
+	private static final int LSH_BAND_COUNT = Integer.getInteger("sarf.lshbands", MinHashIndex.DEFAULT_BAND_COUNT);
+	
+
+	public static void main(String[] args) {
+		long t = System.currentTimeMillis();
+		if (args.length < 3) {
+			System.out.println("Usage: CreateDB jar-file-list db-name num-threads [-full] [-mapped] [-dictionary] [-fingerprint] [-index]");
+			return;
+		}
+
+		int numThreads = Integer.parseInt(args[2]);
+		Concurrent concurrent = new Concurrent(numThreads);
+		
+		// by default, ".cname" and ".code" databases (that are necessary for JIngredients) are created but
+		// skip the generation of databases for Software Bertillonage.
+		final boolean[] skipHashOutput = new boolean[SignatureTypeName.length];
+		skipHashOutput[2] = true;
+		skipHashOutput[3] = true;
+		
+		// "-mapped" writes the databases in the format for MappedClassHashSetList
+		// instead of delta-encoded streams.
+		// "-dictionary" additionally writes the databases in the format for DictionaryClassHashSetList.
+		// "-fingerprint" additionally writes the databases including only fingerprints of hash values.
+		// "-index" additionally creates index, document frequency and MinHash files.
+		// They need the whole database in memory; CreateIndex creates them later.
+		boolean mapped = false;
+		boolean dictionary = false;
+		boolean fingerprint = false;
+		boolean index = false;
+		for (int i=3; i<args.length; ++i) {
+			if (args[i].equalsIgnoreCase("-full")) {
+				skipHashOutput[ 2 ] = false;
+				skipHashOutput[ 3 ] = false;
+			} else if (args[i].equalsIgnoreCase("-mapped")) {
+				mapped = true;
+			} else if (args[i].equalsIgnoreCase("-dictionary")) {
+				dictionary = true;
+			} else if (args[i].equalsIgnoreCase("-fingerprint")) {
+				fingerprint = true;
+			} else if (args[i].equalsIgnoreCase("-index")) {
+				index = true;
+			}
+		}
+			
+		// Signatures of skipped databases are not computed
+		int outputCount = 0;
+		for (int i=0; i<SignatureTypeName.length; ++i) {
+			if (!skipHashOutput[i]) outputCount++;
+		}
+		final int[] signatureTypes = new int[outputCount];
+		for (int i=0, k=0; i<SignatureTypeName.length; ++i) {
+			if (!skipHashOutput[i]) signatureTypes[k++] = i;
+		}
+			
+		try {
+			String outputFilename = args[1];
+			
+			final PrintWriter w = new PrintWriter(new File(outputFilename + FileList));
+			LineNumberReader reader = new LineNumberReader(new FileReader(new File(args[0])));
+
+			final ObjectOutputStream packageInfoStream = new ObjectOutputStream(new FileOutputStream(new File(outputFilename + PackageSetList)));
+
+			final DeltaClassHashSetWriter[] out = new DeltaClassHashSetWriter[SignatureTypeName.length];
+			final MappedClassHashSetWriter[] mappedOut = new MappedClassHashSetWriter[SignatureTypeName.length];
+			final MappedClassHashSetWriter[] fingerprintOut = new MappedClassHashSetWriter[SignatureTypeName.length];
+			final TLongArrayList[] setHashes = new TLongArrayList[SignatureTypeName.length];
+			@SuppressWarnings("unchecked")
+			final ArrayList<ClassHash>[] digests = new ArrayList[SignatureTypeName.length];
+			for (int i=0; i<out.length; ++i) {
+				if (!skipHashOutput[i]) {
+					if (mapped) {
+						mappedOut[i] = new MappedClassHashSetWriter(new File(outputFilename + MappedSignatureTypeName[i]));
+					} else {
+						out[i] = new DeltaClassHashSetWriter(new File(outputFilename + SignatureTypeName[i]), numThreads);
+					}
+					if (fingerprint) {
+						fingerprintOut[i] = new MappedClassHashSetWriter(new File(outputFilename + FingerprintTypeName[i]), ClassHash.FINGERPRINT_LENGTH);
+					}
+					if (i != ComponentEntry.SIG_CLASSNAME) {
+						setHashes[i] = new TLongArrayList();
+					}
+					digests[i] = new ArrayList<>();
+				}
+			}
+
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				final String filename = line;
+				concurrent.execute(new Runnable() {
+					@Override
+					public void run() {
+						Component c = (signatureTypes.length > 0) ? Component.load(new File(filename), false, signatureTypes) : Component.verify(new File(filename), false);
+						if (c != null) {
+							@SuppressWarnings("unchecked")
+							ArrayList<ClassHash>[] sets = new ArrayList[SignatureTypeName.length];
+							long[] setHash = new long[SignatureTypeName.length];
+							ClassHash[] digest = new ClassHash[SignatureTypeName.length];
+							for (int i=0; i<SignatureTypeName.length; ++i) {
+								if (!skipHashOutput[i]) {
+									sets[i] = c.createHashList(i);
+									ClassHashSet set = new ClassHashSet(sets[i]);
+									setHash[i] = set.getSetHash();
+									digest[i] = set.getContentDigest();
+								}
+							}
+							
+							ClassHash phash = c.getPackageSetHash();
+							synchronized (w) {
+								w.println(filename);
+								try {
+									phash.writeTo(packageInfoStream);
+									for (int i=0; i<SignatureTypeName.length; ++i) {
+										if (mappedOut[i] != null) {
+											mappedOut[i].add(sets[i]);
+										} else if (out[i] != null) {
+											out[i].add(sets[i]);
+										}
+										if (fingerprintOut[i] != null) fingerprintOut[i].add(sets[i]);
+										if (setHashes[i] != null) setHashes[i].add(setHash[i]);
+										if (digests[i] != null) digests[i].add(digest[i]);
+									}
+								} catch (IOException e) {
+									e.printStackTrace();
+								}
+							}
+							System.out.print(".");
+						}
+					}
+				});
+			}
+			concurrent.waitComplete();
+			for (int i=0; i<SignatureTypeName.length; ++i) {
+				if (mappedOut[i] != null) {
+					mappedOut[i].close();
+				} else if (out[i] != null) {
+					out[i].close();
+				}
+				if (fingerprintOut[i] != null) {
+					fingerprintOut[i].close();
+				}
+				if (setHashes[i] != null) {
+					writeSetHash(new File(outputFilename + SetHashTypeName[i]), setHashes[i]);
+				}
+				if (digests[i] != null) {
+					writeDigest(new File(outputFilename + DigestTypeName[i]), digests[i]);
+				}
+			}
+			reader.close();
+			packageInfoStream.close();
+			w.close();
+			System.out.println();
+			
+			// The other files are created from the whole database, which is opened once for each type
+			for (int i=0; i<SignatureTypeName.length; ++i) {
+				if (!skipHashOutput[i] && (index || dictionary)) {
+					ClassHashSetList dataset = Database.openSignatureFiles(new String[] { outputFilename }, i);
+					if (index) {
+						createIndexFiles(outputFilename, i, dataset);
+					}
+					if (dictionary) {
+						DictionaryClassHashSetList.write(dataset, new File(outputFilename + DictionaryTypeName[i]), new File(outputFilename + IdTypeName[i]));
+					}
+				}
+			}
+			
+			System.out.println(System.currentTimeMillis() - t);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Create an inverted index, a document frequency file and 
+	 * (for Software Bertillonage) a MinHash file for the signature files of a specified type.
+	 * The signature files are opened only once.
+	 */
+	public static void createIndexFiles(String dbname, int sig) throws IOException {
+		createIndexFiles(dbname, sig, Database.openSignatureFiles(new String[] { dbname }, sig));
+	}
+	
+	private static void createIndexFiles(String dbname, int sig, ClassHashSetList dataset) throws IOException {
+		InvertedIndex.write(dataset, new File(dbname + IndexTypeName[sig]));
+		DocumentFrequency.write(dataset, new File(dbname + FrequencyTypeName[sig]));
+		if (sig == ComponentEntry.SIG_BERTILLONAGE) {
+			MinHashIndex.write(dataset, new File(dbname + MinHashTypeName[sig]), MinHashIndex.DEFAULT_HASH_COUNT, LSH_BAND_COUNT);
+		}
+	}
+
+	/**
+	 * Create an inverted index for the signature files of a specified type.
+	 * The index always uses full hash values, even if fingerprint files exist.
+	 */
+	public static void createIndex(String dbname, int sig) throws IOException {
+		ClassHashSetList dataset = Database.openSignatureFiles(new String[] { dbname }, sig);
+		InvertedIndex.write(dataset, new File(dbname + IndexTypeName[sig]));
+	}
+
+	/**
+	 * Create a dictionary file and an ID file from the signature files of a specified type.
+	 */
+	public static void createDictionary(String dbname, int sig) throws IOException {
+		ClassHashSetList dataset = Database.openSignatureFiles(new String[] { dbname }, sig);
+		DictionaryClassHashSetList.write(dataset, new File(dbname + DictionaryTypeName[sig]), new File(dbname + IdTypeName[sig]));
+	}
+
+	/**
+	 * Create a set hash file from the signature files of a specified type.
+	 * The file enables Database to find jar files identical to a target.
+	 */
+	public static void createSetHash(String dbname, int sig) throws IOException {
+		ClassHashSetList dataset = Database.openSignatureFiles(new String[] { dbname }, sig);
+		TLongArrayList setHashes = new TLongArrayList(dataset.size());
+		for (int i=0; i<dataset.size(); ++i) {
+			setHashes.add(dataset.get(i).getSetHash());
+		}
+		writeSetHash(new File(dbname + SetHashTypeName[sig]), setHashes);
+	}
+	
+	/**
+	 * Create a digest file from the signature files of a specified type.
+	 */
+	public static void createDigest(String dbname, int sig) throws IOException {
+		ClassHashSetList dataset = Database.openSignatureFiles(new String[] { dbname }, sig);
+		ArrayList<ClassHash> digests = new ArrayList<>(dataset.size());
+		for (int i=0; i<dataset.size(); ++i) {
+			digests.add(dataset.get(i).getContentDigest());
+		}
+		writeDigest(new File(dbname + DigestTypeName[sig]), digests);
+	}
+	
+	private static void writeDigest(File file, ArrayList<ClassHash> digests) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		out.writeInt(DIGEST_MAGIC);
+		out.writeInt(DIGEST_VERSION);
+		out.writeInt(digests.size());
+		for (ClassHash h: digests) {
+			h.writeTo(out);
+		}
+		out.close();
+	}
+	
+	private static void writeSetHash(File file, TLongArrayList setHashes) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		out.writeInt(SETHASH_MAGIC);
+		out.writeInt(SETHASH_VERSION);
+		out.writeInt(setHashes.size());
+		for (int i=0; i<setHashes.size(); ++i) {
+			out.writeLong(setHashes.get(i));
+		}
+		out.close();
+	}
+
+	/**
+	 * Create a document frequency file from the signature files of a specified type.
+	 * The file enables Database to exclude hash values included in many jar files.
+	 */
+	public static void createDocumentFrequency(String dbname, int sig) throws IOException {
+		ClassHashSetList dataset = Database.openSignatureFiles(new String[] { dbname }, sig);
+		DocumentFrequency.write(dataset, new File(dbname + FrequencyTypeName[sig]));
+	}
+
+	/**
+	 * Create a file of MinHash signatures and LSH bands from the signature files of a specified type.
+	 * The file enables an approximate Software Bertillonage.
+	 */
+	public static void createMinHash(String dbname, int sig) throws IOException {
+		ClassHashSetList dataset = Database.openSignatureFiles(new String[] { dbname }, sig);
+		MinHashIndex.write(dataset, new File(dbname + MinHashTypeName[sig]), MinHashIndex.DEFAULT_HASH_COUNT, LSH_BAND_COUNT);
+	}
+
+	/**
+	 * Create a fingerprint file from the signature files of a specified type.
+	 */
+	public static void createFingerprint(String dbname, int sig) throws IOException {
+		ClassHashSetList dataset = Database.openSignatureFiles(new String[] { dbname }, sig);
+		MappedClassHashSetWriter w = new MappedClassHashSetWriter(new File(dbname + FingerprintTypeName[sig]), ClassHash.FINGERPRINT_LENGTH);
+		for (int i=0; i<dataset.size(); ++i) {
+			w.add(dataset.get(i));
+		}
+		w.close();
+	}
+
+
+}
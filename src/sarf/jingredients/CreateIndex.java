@@ -0,0 +1,34 @@
+package sarf.jingredients;
+
+import java.io.File;
+import java.io.IOException;
+
+public class CreateIndex {
+
+	/**
+	 * Create inverted indexes of class names and signatures for existing databases.
+	 * An index, a document frequency file and (for Software Bertillonage) a MinHash file 
+	 * are created for each type of signature files in a database.
+	 * CreateDB creates the same files for a new database if "-index" is specified.
+	 */
+	public static void main(String[] args) {
+		long t = System.currentTimeMillis();
+		if (args.length < 1) {
+			System.out.println("Usage: CreateIndex db-name [db-name ...]");
+			return;
+		}
+		try {
+			for (String dbname: args) {
+				for (int i=0; i<CreateDB.SignatureTypeName.length; ++i) {
+					if (new File(dbname + CreateDB.SignatureTypeName[i]).exists() || new File(dbname + CreateDB.MappedSignatureTypeName[i]).exists()) {
+						CreateDB.createIndexFiles(dbname, i);
+					}
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		System.out.println(System.currentTimeMillis() - t);
+	}
+
+}
@@ -1,341 +1,1551 @@
-package sarf.jingredients;
-
-import gnu.trove.list.array.TIntArrayList;
-
-import java.io.EOFException;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.zip.GZIPInputStream;
-
-import sarf.jingredients.hash.ClassHash;
-import sarf.jingredients.hash.ClassHashSet;
-import sarf.jingredients.model.Component;
-import sarf.jingredients.model.ComponentEntry;
-import sarf.jingredients.util.ComponentUtil;
-import sarf.jingredients.util.StringList;
-
-public class Database {
-
-	private static boolean DEBUG = false;
-
-	private ArrayList<ClassHashSet> codesigDataset = new ArrayList<>();
-	private ArrayList<ClassHashSet> classnameDataset = new ArrayList<>();
-	private ArrayList<String> filenames = new ArrayList<>();
-	private ArrayList<ClassHash> packageSetList = new ArrayList<>(); 
-	private int comparisonSig;
-	
-	
-	public Database(String[] datafiles, int comparisonSig) throws IOException {
-		this.comparisonSig = comparisonSig;
-		for (String filename: datafiles) {
-			classnameDataset.addAll(load(new File(filename + CreateDB.SignatureTypeName[ComponentEntry.SIG_CLASSNAME])));
-			codesigDataset.addAll(load(new File(filename + CreateDB.SignatureTypeName[comparisonSig])));
-			filenames.addAll(StringList.loadFromFile(new File(filename + CreateDB.FileList)));
-			packageSetList.addAll(loadPackageHashList(new File(filename + CreateDB.PackageSetList)));
-		}
-
-		assert filenames.size() == classnameDataset.size(): "Inconsistent file list and dataset";
-		assert filenames.size() == codesigDataset.size(): "Inconsistent file list and dataset";
-		assert filenames.size() == packageSetList.size(): "Inconsistent file list and package set list"; 
-	}
-	
-	public int size() {
-		return classnameDataset.size();
-	}
-	
-	public static ArrayList<ClassHashSet> load(File file) throws IOException {
-		ArrayList<ClassHashSet> dataset = new ArrayList<>();
-		FileInputStream f = new FileInputStream(file);
-		GZIPInputStream expanded = new GZIPInputStream(f);
-		ObjectInputStream in = new ObjectInputStream(expanded);
-		
-		ClassHashSet set = ClassHashSet.readFromStream(in);
-		while (set != null) {
-			dataset.add(set);
-			if (DEBUG) {
-				System.out.println(set.size());
-				for (ClassHash h: set) {
-					System.out.println(h.toString());
-				}
-			}
-			set = ClassHashSet.readFromStream(in);
-		}
-		in.close();
-		return dataset;
-	}
-	
-	public static ArrayList<ClassHash> loadPackageHashList(File file) throws IOException {
-		ArrayList<ClassHash> list = new ArrayList<>();
-		FileInputStream f = new FileInputStream(file);
-		ObjectInputStream in = new ObjectInputStream(f);
-		try {
-			for (;;) {
-				list.add(new ClassHash(in));
-			}
-		} catch (EOFException e) {
-			return list;
-		} catch (IOException e) {
-			throw e;
-		}
-	}
-
-	
-	
-	public ArrayList<Report> analyzeIngredients(Component target, boolean filterByPackage) {
-		
-		ArrayList<Report> result = new ArrayList<>();
-		ArrayList<ClassHash> hasharray = target.createHashList(ComponentEntry.SIG_CLASSNAME);
-		ClassHashSet nameHash = new ClassHashSet(hasharray);
-		
-		TargetComponent app = new TargetComponent(target, comparisonSig);
-		
-		ArrayList<OverlapResult> overlaps = new ArrayList<>(); 
-		for (int i=0; i<filenames.size(); i++) {
-			if (!filterByPackage || !app.getPackageHash().equals(packageSetList.get(i))) {
-				if (nameHash.size() >= classnameDataset.get(i).size()) {
-					double nameOverlap = nameHash.overlap(classnameDataset.get(i));
-					OverlapResult r = new OverlapResult(nameOverlap, filenames.get(i), codesigDataset.get(i));
-					if (r.overlap > 0) {
-						overlaps.add(r);
-					}
-				}
-			}
-		}
-		Collections.sort(overlaps);
-		
-		
-		ArrayList<ArrayList<OverlapResult>> arrays = splitByOverlap(overlaps);
-		for (ArrayList<OverlapResult> array: arrays) {
-			
-			ArrayList<IntersectionResult> intersections = new ArrayList<>(array.size());
-			for (int i=0; i<array.size(); ++i) {
-				IntersectionResult r = new IntersectionResult(app.getContent(), array.get(i));
-				if (r.intersection.size() > 0) {
-					intersections.add(r);
-				}
-			}
-			Collections.sort(intersections);
-
-			while (!intersections.isEmpty() && intersections.get(0).intersection.size() > 0) {
-				
-				// Select the top (and the same content components)
-				IntersectionResult top = intersections.get(0);
-				ArrayList<IntersectionResult> selected = new ArrayList<>(intersections.size());
-				ArrayList<IntersectionResult> remaining = new ArrayList<>(intersections.size());
-				selected.add(top);
-				int topSize = top.intersection.size();
-				assert topSize > 0;
-				for (int i=1; i<intersections.size(); ++i) {
-					IntersectionResult another = intersections.get(i);
-					if (another.intersection.equals(top.intersection)) {
-						selected.add(another);
-					} else {
-						remaining.add(another);
-					}
-				}
-				assert selected.size() + remaining.size() == intersections.size(); 
-				
-				// Create a report
-				ArrayList<String> libnames = new ArrayList<>(selected.size());
-				TIntArrayList libsizes = new TIntArrayList(selected.size());
-				for (IntersectionResult r: selected) {
-					libnames.add(r.libname);
-					libsizes.add(r.origin.libcodesig.size());
-					//orgIntersections.add(Integer.toString(r.originalIntersection));
-				}
-				ArrayList<String> matchedNames = app.getNames(top.intersection);
-				result.add(new Report(libnames, topSize, libsizes, matchedNames));
-
-				// Remove the selected classes from the remaining lists
-				app.getContent().removeAll(top.intersection);
-				for (IntersectionResult r: remaining) {
-					r.intersection.removeAll(top.intersection);
-				}
-				Collections.sort(remaining);
-				intersections = remaining;
-				
-				//int originalSize = app.size(); 
-				//System.out.println(" -> " + app.size());
-			}
-		}
-		return result;
-	}
-
-	
-	public ArrayList<Report> analyzeBertilonage(Component target, boolean filterByPackage) {
-		
-		ArrayList<Report> result = new ArrayList<>();
-		TargetComponent app = new TargetComponent(target, comparisonSig);
-		
-		LinkedList<JaccardResult> jaccard = new LinkedList<>(); 
-		for (int i=0; i<filenames.size(); i++) {
-			if (!filterByPackage || !app.getPackageHash().equals(packageSetList.get(i))) {
-				JaccardResult r = new JaccardResult(app.getContent(), filenames.get(i), codesigDataset.get(i));
-				jaccard.add(r);
-			}
-		}
-		Collections.sort(jaccard);
-		
-		HashSet<String> selectedProjectNames = new HashSet<>();
-		
-		while (!jaccard.isEmpty() && jaccard.get(0).intersection.size() > 0) {
-				
-			// Select the top (and the same content components)
-			JaccardResult top = jaccard.getFirst();
-			if (selectedProjectNames.contains(top.projectname)) {
-				jaccard.removeFirst();
-				continue;
-			}
-			
-			ArrayList<JaccardResult> selected = new ArrayList<>();
-			int topSize = top.intersection.size();
-			assert topSize > 0;
-			for (Iterator<JaccardResult> it = jaccard.iterator(); it.hasNext(); ) {
-				JaccardResult j = it.next();
-				if (selectedProjectNames.contains(j.projectname)) {
-					it.remove();
-				} else if (top.intersection.equals(j.intersection)) {
-					selected.add(j);
-					it.remove();
-				}
-			}
-			assert selected.size() > 0;
-				
-			// Create a report
-			ArrayList<String> libnames = new ArrayList<>();
-			TIntArrayList libsize = new TIntArrayList();
-			for (JaccardResult r: selected) {
-				libnames.add(r.libname);
-				libsize.add(r.libsize);
-				selectedProjectNames.add(r.projectname);
-			}
-			ArrayList<String> matchedNames = app.getNames(top.intersection);
-			result.add(new Report(libnames, topSize, libsize, matchedNames));
-		}
-		
-		return result;
-	}
-	
-	
-
-
-	
-	private static class IntersectionResult implements Comparable<IntersectionResult> {
-
-		private String libname;
-		private ClassHashSet intersection; 
-		private OverlapResult origin;
-		
-
-		IntersectionResult(ClassHashSet app, OverlapResult overlap) {
-			this.libname = overlap.libname;
-			this.origin = overlap;
-			this.intersection = app.getIntersectionSet(overlap.libcodesig);
-		}
-		
-		@Override
-		public int compareTo(IntersectionResult another) {
-			int c = -Integer.compare(this.intersection.size(), another.intersection.size());
-			if (c == 0) {
-				return this.libname.compareTo(another.libname);
-			} else {
-				return c;
-			}
-		}
-		
-	}
-	
-
-	private static ArrayList<ArrayList<OverlapResult>> splitByOverlap(ArrayList<OverlapResult> overlaps) {
-		ArrayList<ArrayList<OverlapResult>> splitArrays = new ArrayList<>();
-		if (overlaps.size() == 0) return splitArrays;
-		
-		ArrayList<OverlapResult> items = new ArrayList<>();
-		items.add(overlaps.get(0));
-		for (int i=1; i<overlaps.size(); i++) {
-			OverlapResult current = overlaps.get(i);
-			if (current.overlap == items.get(0).overlap) {
-				items.add(current);
-			} else {
-				splitArrays.add(items);
-				items = new ArrayList<>();
-				items.add(current);
-			}
-		}
-		if (items.get(0).overlap > 0) {
-			splitArrays.add(items);
-		}
-		
-		return splitArrays;
-	}
-
-	
-	private static class OverlapResult implements Comparable<OverlapResult> {
-
-		private String libname;
-		private double overlap;
-		private ClassHashSet libcodesig;
-		
-		OverlapResult(double nameOverlap, String libname, ClassHashSet libcodesig) {
-			this.libname = libname;
-			this.overlap = nameOverlap;
-			this.libcodesig = libcodesig;
-		}
-		
-		@Override
-		public int compareTo(OverlapResult another) {
-			int c = -Double.compare(this.overlap, another.overlap);
-			if (c == 0) {
-				return this.libname.compareTo(another.libname);
-			} else {
-				return c;
-			}
-		}
-		
-		public String toString() {
-			return libname + ";" + Double.toString(overlap); 
-		}
-		
-	}
-	
-	private static class JaccardResult implements Comparable<JaccardResult> {
-
-		private String libname;
-		private String projectname;
-		private ClassHashSet intersection;
-		private int libsize;
-		private double jaccard;
-		
-		JaccardResult(ClassHashSet app, String libname, ClassHashSet signature) {
-			this.libname = libname;
-			this.projectname = ComponentUtil.getProjectPath(libname);
-			this.libsize = signature.size();
-			this.intersection = app.getIntersectionSet(signature);
-			this.jaccard = (intersection.size() * 1.0) / (app.size() + signature.size() - intersection.size());
-		}
-		
-		@Override
-		public int compareTo(JaccardResult another) {
-			int c = -Double.compare(this.jaccard, another.jaccard);
-			if (c == 0) {
-				return this.libname.compareTo(another.libname);
-			} else {
-				return c;
-			}
-		}
-		
-		public String toString() {
-			return libname + ";" + Double.toString(jaccard); 
-		}
-		
-	}
-	
-
-}
+package sarf.jingredients;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.iterator.TIntIntIterator;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import sarf.jingredients.db.ClassHashSetList;
+import sarf.jingredients.db.ClassHashSetReader;
+import sarf.jingredients.db.DictionaryClassHashSetList;
+import sarf.jingredients.db.DocumentFrequency;
+import sarf.jingredients.db.InMemoryClassHashSetList;
+import sarf.jingredients.db.InvertedIndex;
+import sarf.jingredients.db.LazyClassHashSetList;
+import sarf.jingredients.db.MappedClassHashSetList;
+import sarf.jingredients.db.MinHashIndex;
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.hash.ClassHashSet;
+import sarf.jingredients.model.ClassNameFilter;
+import sarf.jingredients.model.Component;
+import sarf.jingredients.model.ComponentEntry;
+import sarf.jingredients.util.ComponentUtil;
+import sarf.jingredients.util.Concurrent;
+import sarf.jingredients.util.StringList;
+
+public class Database {
+
+	private static boolean DEBUG = false;
+
+	/**
+	 * The memory budget (in megabytes) of the code signatures decoded on demand.
+	 * Zero (default) loads all the code signatures into the heap.
+	 */
+	private static final long CODE_CACHE_SIZE = Long.parseLong(System.getProperty("sarf.codecache", "0")) << 20;
+
+	private ClassHashSetList codesigDataset;
+	private ClassHashSetList classnameDataset;
+	private ClassHashSetList verificationDataset;
+	private InvertedIndex classnameIndex;
+	private InvertedIndex codesigIndex;
+	private MinHashIndex codesigMinHash;
+	private ArrayList<String> filenames = new ArrayList<>();
+	private ArrayList<ClassHash> packageSetList = new ArrayList<>(); 
+	private int comparisonSig;
+	
+	/**
+	 * Jar files having the same package set, the same class names and the same signatures
+	 * are compared with a target only once.
+	 * representatives[i] is the index of the jar file compared on behalf of the i-th jar file.
+	 * A representative has the smallest file name among the jar files. 
+	 */
+	private int[] representatives;
+	private TIntObjectHashMap<TIntArrayList> duplicates = new TIntObjectHashMap<>();
+	private int distinctCount;
+	
+	/**
+	 * Representatives sorted by the number of class names in the ascending order.
+	 * sortedNameSizes[k] is the number of class names of sizeOrder[k]. 
+	 * Jar files larger than a target are excluded from a scan as a range.
+	 * sizeRank[i] is the position of the i-th jar file in sizeOrder, or -1 if it is not a representative.
+	 */
+	private int[] sizeOrder;
+	private int[] sortedNameSizes;
+	private int[] sizeRank;
+	
+	/**
+	 * Representatives of jar files indexed by the set hash of their signatures.
+	 * This is null if the set hash values are not available.
+	 */
+	private TLongObjectHashMap<TIntArrayList> exactCopyIndex;
+	
+	/**
+	 * The number of threads used by a single analysis.
+	 * Zero means the default of Concurrent. 
+	 */
+	private int analysisThreads = 1;
+	
+	/**
+	 * A thread pool shared by analyses of targets.
+	 * It is created by the first analysis and shut down by close.
+	 */
+	private Concurrent analysisPool;
+	
+	/**
+	 * analyzeIngredients compares a target only with jar files 
+	 * whose overlap of class names is the same as or larger than this value.
+	 */
+	private double minOverlap = 0;
+	
+	/**
+	 * analyzeIngredients stops after creating this number of reports.
+	 * Zero means no limit.
+	 */
+	private int maxReports = 0;
+	
+	/**
+	 * The numbers of jar files including hash values.
+	 * They are null if the frequency files are not available.
+	 */
+	private DocumentFrequency nameFrequency;
+	private DocumentFrequency codeFrequency;
+	
+	/**
+	 * Class names and signatures ignored by analyzeIngredients.
+	 * They are null if no stop-list is specified.
+	 */
+	private ClassHashSet stopNames;
+	private ClassHashSet stopCodes;
+	
+	/**
+	 * analyzeApproximateBertilonage regards jar files having at least this number of 
+	 * the same LSH bands as a target as candidates.
+	 */
+	private int lshMinBandMatches = 1;
+	
+	/**
+	 * analyzeApproximateBertilonage verifies at most this number of candidates 
+	 * in the descending order of the estimated Jaccard index.
+	 * Zero means no limit.
+	 */
+	private int lshMaxCandidates = 0;
+	
+	/**
+	 * The minimum number of jar files processed by a task in a parallel analysis.
+	 */
+	private static final int MIN_CHUNK_SIZE = 16;
+	
+	
+	public Database(String[] datafiles, int comparisonSig) throws IOException {
+		this(datafiles, comparisonSig, true);
+	}
+	
+	/**
+	 * @param verifyFingerprint specifies whether matched classes in reports are
+	 * verified by full hash values if the databases have fingerprint files.
+	 * Files of the databases are loaded in parallel
+	 * and then concatenated in the given order.
+	 */
+	public Database(final String[] datafiles, final int comparisonSig, boolean verifyFingerprint) throws IOException {
+		this.comparisonSig = comparisonSig;
+		Concurrent concurrent = new Concurrent();
+		// Up to three datasets are loaded in parallel; they share the number of threads
+		// instead of creating their own thread pools of the default size.
+		final int loadThreads = Math.max(1, concurrent.getThreadCount() / 3);
+		Future<ClassHashSetList> classnameFuture = concurrent.submit(new Callable<ClassHashSetList>() {
+			@Override
+			public ClassHashSetList call() throws IOException {
+				return openDataset(datafiles, ComponentEntry.SIG_CLASSNAME, 0, loadThreads);
+			}
+		});
+		Future<ClassHashSetList> codesigFuture = concurrent.submit(new Callable<ClassHashSetList>() {
+			@Override
+			public ClassHashSetList call() throws IOException {
+				return openDataset(datafiles, comparisonSig, CODE_CACHE_SIZE, loadThreads);
+			}
+		});
+		Future<ClassHashSetList> verificationFuture = null;
+		if (verifyFingerprint && hasFingerprintFiles(datafiles, comparisonSig)) {
+			verificationFuture = concurrent.submit(new Callable<ClassHashSetList>() {
+				@Override
+				public ClassHashSetList call() throws IOException {
+					return openFullDataset(datafiles, comparisonSig, 0, loadThreads);
+				}
+			});
+		}
+		Future<InvertedIndex> indexFuture = concurrent.submit(new Callable<InvertedIndex>() {
+			@Override
+			public InvertedIndex call() throws IOException {
+				return openIndex(datafiles, ComponentEntry.SIG_CLASSNAME);
+			}
+		});
+		Future<InvertedIndex> codesigIndexFuture = concurrent.submit(new Callable<InvertedIndex>() {
+			@Override
+			public InvertedIndex call() throws IOException {
+				return openIndex(datafiles, comparisonSig);
+			}
+		});
+		Future<MinHashIndex> minHashFuture = concurrent.submit(new Callable<MinHashIndex>() {
+			@Override
+			public MinHashIndex call() throws IOException {
+				return openMinHashIndex(datafiles, comparisonSig);
+			}
+		});
+		Future<DocumentFrequency> nameFrequencyFuture = concurrent.submit(new Callable<DocumentFrequency>() {
+			@Override
+			public DocumentFrequency call() throws IOException {
+				return openDocumentFrequency(datafiles, ComponentEntry.SIG_CLASSNAME);
+			}
+		});
+		Future<DocumentFrequency> codeFrequencyFuture = concurrent.submit(new Callable<DocumentFrequency>() {
+			@Override
+			public DocumentFrequency call() throws IOException {
+				return openDocumentFrequency(datafiles, comparisonSig);
+			}
+		});
+		Future<ArrayList<ClassHash>> nameDigestFuture = concurrent.submit(new Callable<ArrayList<ClassHash>>() {
+			@Override
+			public ArrayList<ClassHash> call() throws IOException {
+				return openDigests(datafiles, ComponentEntry.SIG_CLASSNAME);
+			}
+		});
+		Future<ArrayList<ClassHash>> codeDigestFuture = concurrent.submit(new Callable<ArrayList<ClassHash>>() {
+			@Override
+			public ArrayList<ClassHash> call() throws IOException {
+				return openDigests(datafiles, comparisonSig);
+			}
+		});
+		ArrayList<Future<ArrayList<String>>> fileListFutures = new ArrayList<>();
+		ArrayList<Future<ArrayList<ClassHash>>> packageFutures = new ArrayList<>();
+		ArrayList<Future<TLongArrayList>> setHashFutures = new ArrayList<>();
+		final boolean setHash = hasSetHashFiles(datafiles, comparisonSig);
+		for (final String filename: datafiles) {
+			fileListFutures.add(concurrent.submit(new Callable<ArrayList<String>>() {
+				@Override
+				public ArrayList<String> call() throws IOException {
+					return StringList.loadFromFile(new File(filename + CreateDB.FileList));
+				}
+			}));
+			packageFutures.add(concurrent.submit(new Callable<ArrayList<ClassHash>>() {
+				@Override
+				public ArrayList<ClassHash> call() throws IOException {
+					return loadPackageHashList(new File(filename + CreateDB.PackageSetList));
+				}
+			}));
+			if (setHash) {
+				setHashFutures.add(concurrent.submit(new Callable<TLongArrayList>() {
+					@Override
+					public TLongArrayList call() throws IOException {
+						return loadSetHashList(new File(filename + CreateDB.SetHashTypeName[comparisonSig]));
+					}
+				}));
+			}
+		}
+		TLongArrayList setHashes = null;
+		ArrayList<ClassHash> nameDigests;
+		ArrayList<ClassHash> codeDigests;
+
+		try {
+			for (int i=0; i<datafiles.length; ++i) {
+				ArrayList<String> shardFilenames = getResult(fileListFutures.get(i));
+				ArrayList<ClassHash> shardPackages = getResult(packageFutures.get(i));
+				assert shardFilenames.size() == shardPackages.size(): "Inconsistent file list and package set list: " + datafiles[i];
+				filenames.addAll(shardFilenames);
+				packageSetList.addAll(shardPackages);
+			}
+			if (setHash) {
+				setHashes = new TLongArrayList(filenames.size());
+				for (Future<TLongArrayList> future: setHashFutures) {
+					setHashes.addAll(getResult(future));
+				}
+			}
+			classnameDataset = getResult(classnameFuture);
+			codesigDataset = getResult(codesigFuture);
+			if (verificationFuture != null) {
+				verificationDataset = getResult(verificationFuture);
+				assert verificationDataset.size() == codesigDataset.size(): "Inconsistent fingerprint and signature files";
+			}
+			classnameIndex = getResult(indexFuture);
+			codesigIndex = getResult(codesigIndexFuture);
+			codesigMinHash = getResult(minHashFuture);
+			nameFrequency = getResult(nameFrequencyFuture);
+			codeFrequency = getResult(codeFrequencyFuture);
+			nameDigests = getResult(nameDigestFuture);
+			codeDigests = getResult(codeDigestFuture);
+		} finally {
+			concurrent.waitComplete();
+		}
+
+		assert filenames.size() == classnameDataset.size(): "Inconsistent file list and dataset";
+		assert filenames.size() == codesigDataset.size(): "Inconsistent file list and dataset";
+		assert filenames.size() == packageSetList.size(): "Inconsistent file list and package set list"; 
+		assert classnameIndex == null || filenames.size() == classnameIndex.getJarCount(): "Inconsistent file list and index";
+		assert codesigIndex == null || filenames.size() == codesigIndex.getJarCount(): "Inconsistent file list and index";
+		assert codesigMinHash == null || filenames.size() == codesigMinHash.getJarCount(): "Inconsistent file list and MinHash file";
+		
+		assert nameDigests == null || filenames.size() == nameDigests.size(): "Inconsistent file list and digest file";
+		assert codeDigests == null || filenames.size() == codeDigests.size(): "Inconsistent file list and digest file";
+		
+		groupDuplicates(nameDigests, codeDigests);
+		createSizeOrder();
+		if (setHashes == null && codesigDataset instanceof InMemoryClassHashSetList) {
+			// Compute the set hash values of loaded sets
+			setHashes = new TLongArrayList(filenames.size());
+			for (int i=0; i<codesigDataset.size(); ++i) {
+				setHashes.add(codesigDataset.get(i).getSetHash());
+			}
+		}
+		if (setHashes != null) {
+			assert filenames.size() == setHashes.size(): "Inconsistent file list and set hash list";
+			createExactCopyIndex(setHashes);
+		}
+	}
+	
+	/**
+	 * Sort representatives by their numbers of class names.
+	 * Jar files of the same size are kept in the original order.
+	 */
+	private void createSizeOrder() {
+		long[] sizeAndIndex = new long[distinctCount];
+		int n = 0;
+		for (int i=0; i<filenames.size(); ++i) {
+			if (representatives[i] == i) {
+				sizeAndIndex[n++] = ((long)classnameDataset.getSetSize(i) << 32) | i;
+			}
+		}
+		Arrays.sort(sizeAndIndex);
+		sizeOrder = new int[n];
+		sortedNameSizes = new int[n];
+		sizeRank = new int[filenames.size()];
+		Arrays.fill(sizeRank, -1);
+		for (int k=0; k<n; ++k) {
+			sizeOrder[k] = (int)sizeAndIndex[k];
+			sortedNameSizes[k] = (int)(sizeAndIndex[k] >>> 32);
+			sizeRank[sizeOrder[k]] = k;
+		}
+	}
+	
+	/**
+	 * @param targetSize is the number of class names of a target.
+	 * @param candidateSize is the number of class names of the target used to find candidates.
+	 * @return the maximum number of class names of a jar file compared with the target.
+	 * A jar file larger than the target is not a candidate.
+	 * In addition, the overlap of a jar file of size s is at most candidateSize / s,
+	 * so that larger jar files cannot reach a positive minOverlap.
+	 */
+	static int maxCandidateSize(int targetSize, int candidateSize, double minOverlap) {
+		if (minOverlap <= 0) return targetSize;
+		int size = (int)Math.min(targetSize, Math.floor(candidateSize / minOverlap));
+		// Correct a rounding error so that the bound is the same as the comparison in analyzeIngredients
+		while (size < targetSize && candidateSize * 1.0 / (size + 1) >= minOverlap) size++;
+		while (size > 0 && candidateSize * 1.0 / size < minOverlap) size--;
+		return size;
+	}
+	
+	/**
+	 * @return the number of representatives whose numbers of class names 
+	 * are the same as or less than a given size.
+	 * They are the first elements of sizeOrder.
+	 */
+	private int countNotLarger(int size) {
+		int low = 0;
+		int high = sortedNameSizes.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sortedNameSizes[mid] <= size) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+	
+	private void createExactCopyIndex(TLongArrayList setHashes) {
+		exactCopyIndex = new TLongObjectHashMap<>();
+		for (int i=0; i<filenames.size(); ++i) {
+			if (representatives[i] == i) {
+				TIntArrayList list = exactCopyIndex.get(setHashes.get(i));
+				if (list == null) {
+					list = new TIntArrayList(1);
+					exactCopyIndex.put(setHashes.get(i), list);
+				}
+				list.add(i);
+			}
+		}
+	}
+	
+	/**
+	 * @return the result of a loading task.
+	 * An exception thrown by the task is rethrown as an IOException. 
+	 */
+	private static <T> T getResult(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException)e.getCause();
+			} else {
+				throw new IOException(e.getCause());
+			}
+		}
+	}
+	
+	public int size() {
+		return classnameDataset.size();
+	}
+	
+	/**
+	 * @return signature types of a target component used by the analysis methods.
+	 * They are given to Component.load.
+	 */
+	public int[] getTargetSignatures() {
+		return new int[] { ComponentEntry.SIG_CLASSNAME, comparisonSig };
+	}
+	
+	/**
+	 * @return a filter accepting classes whose names are included in at least one jar file in the database,
+	 * or null if the database has no class name index.
+	 * Since the other signatures include a class name, a rejected class never matches the database.
+	 * A target loaded with the filter is analyzed by analyzeIngredients with the same result,
+	 * while the Bertillonage analyses need all the classes of a target.
+	 */
+	public ClassNameFilter getClassNameFilter() {
+		if (classnameIndex == null) return null;
+		return new ClassNameFilter() {
+			@Override
+			public boolean accept(ClassHash nameHash) {
+				return classnameIndex.contains(nameHash);
+			}
+		};
+	}
+	
+	/**
+	 * Specify the number of threads used by analyzeIngredients.
+	 * One (default) executes an analysis in the calling thread,
+	 * which is suitable when multiple targets are analyzed in parallel.
+	 * Zero means the default of Concurrent, i.e. the system property "sarf.threads".
+	 * An analysis produces the same reports regardless of the number of threads.
+	 * A thread pool is shared by analyses until close is called.
+	 */
+	public synchronized void setAnalysisThreads(int threads) {
+		if (analysisPool != null) {
+			analysisPool.waitComplete();
+			analysisPool = null;
+		}
+		this.analysisThreads = threads;
+	}
+	
+	/**
+	 * @return a thread pool for an analysis, or null if an analysis is executed in the calling thread.
+	 */
+	private synchronized Concurrent getAnalysisPool() {
+		if (analysisThreads == 1) return null;
+		if (analysisPool == null) {
+			analysisPool = (analysisThreads > 0) ? new Concurrent(analysisThreads) : new Concurrent();
+		}
+		return analysisPool;
+	}
+	
+	/**
+	 * Shut down the thread pool used by analyzeIngredients.
+	 * The method must be called when multiple threads are used for analyses.
+	 */
+	public synchronized void close() {
+		if (analysisPool != null) {
+			analysisPool.waitComplete();
+			analysisPool = null;
+		}
+	}
+	
+	/**
+	 * Specify the minimum overlap coefficient of class names between a target and a jar file.
+	 * Jar files below the threshold are excluded from analyzeIngredients
+	 * without computing their intersections with a target.
+	 * Zero (default) compares a target with all the jar files sharing a class name.
+	 */
+	public void setMinOverlap(double minOverlap) {
+		this.minOverlap = minOverlap;
+	}
+	
+	/**
+	 * Specify the maximum number of reports created by analyzeIngredients.
+	 * Since reports are created in the descending order of the overlap,
+	 * the reports are the same as the first reports of an unlimited analysis.
+	 * Zero (default) means no limit.
+	 */
+	public void setMaxReports(int maxReports) {
+		this.maxReports = maxReports;
+	}
+	
+	/**
+	 * Exclude class names and signatures included in more than 
+	 * the specified ratio of jar files from analyzeIngredients.
+	 * Such classes (e.g. package-info and tiny utility classes) do not distinguish components, 
+	 * while they make many jar files candidates of a target.
+	 * The excluded classes are never reported.
+	 * The stop-list is available if CreateDB has created document frequency files.
+	 * Zero (default) disables the stop-list.
+	 * @return true if the stop-list is available.
+	 */
+	public boolean setStopList(double maxFrequency) {
+		if (maxFrequency > 0 && nameFrequency != null && codeFrequency != null) {
+			stopNames = nameFrequency.getFrequentHashes(maxFrequency);
+			stopCodes = codeFrequency.getFrequentHashes(maxFrequency);
+			return true;
+		} else {
+			stopNames = null;
+			stopCodes = null;
+			return maxFrequency <= 0;
+		}
+	}
+	
+	/**
+	 * Specify the tradeoff between recall and latency of analyzeApproximateBertilonage.
+	 * @param minBandMatches specifies the number of LSH bands that a candidate must share with a target.
+	 * One (default) finds the most candidates.
+	 * @param maxCandidates specifies the maximum number of candidates compared with a target.
+	 * Zero (default) compares all the candidates.
+	 */
+	public void setLshParameters(int minBandMatches, int maxCandidates) {
+		this.lshMinBandMatches = minBandMatches;
+		this.lshMaxCandidates = maxCandidates;
+	}
+	
+	/**
+	 * @return true if analyzeApproximateBertilonage can use MinHash files.
+	 */
+	public boolean hasMinHash() {
+		return codesigMinHash != null;
+	}
+	
+	/**
+	 * @return the number of jar files having distinct content.
+	 */
+	public int distinctSize() {
+		return distinctCount;
+	}
+	
+	/**
+	 * Detect jar files having the same content.
+	 * The content is identified by a SHA-1 hash of the package hash and the digests of class names and signatures.
+	 * Sets in the heap are shared by the jar files.
+	 * @param nameDigests and codeDigests are the digests of the sets loaded from digest files.
+	 * If they are null, the digests are computed from the sets.
+	 */
+	private void groupDuplicates(ArrayList<ClassHash> nameDigests, ArrayList<ClassHash> codeDigests) {
+		MessageDigest digest = Component.getAlgorithm();
+		byte[] buf = new byte[ClassHash.SHA1LENGTH];
+		HashMap<ClassHash, TIntArrayList> groups = new HashMap<>();
+		for (int i=0; i<filenames.size(); ++i) {
+			packageSetList.get(i).copyTo(buf);
+			digest.update(buf);
+			getDigest(classnameDataset, nameDigests, i).copyTo(buf);
+			digest.update(buf);
+			getDigest(codesigDataset, codeDigests, i).copyTo(buf);
+			digest.update(buf);
+			ClassHash h = new ClassHash(digest.digest());
+			TIntArrayList members = groups.get(h);
+			if (members == null) {
+				members = new TIntArrayList(1);
+				groups.put(h, members);
+			}
+			members.add(i);
+		}
+		
+		representatives = new int[filenames.size()];
+		distinctCount = groups.size();
+		boolean shareNames = canShare(classnameDataset);
+		boolean shareCodes = canShare(codesigDataset);
+		for (TIntArrayList members: groups.values()) {
+			int representative = members.get(0);
+			for (int k=1; k<members.size(); ++k) {
+				if (filenames.get(members.get(k)).compareTo(filenames.get(representative)) < 0) {
+					representative = members.get(k);
+				}
+			}
+			for (int k=0; k<members.size(); ++k) {
+				int member = members.get(k);
+				representatives[member] = representative;
+				if (member != representative) {
+					if (shareNames) share(classnameDataset, member, representative);
+					if (shareCodes) share(codesigDataset, member, representative);
+				}
+			}
+			if (members.size() > 1) {
+				duplicates.put(representative, members);
+			}
+		}
+	}
+	
+	/**
+	 * @return true if the dataset keeps sets in the heap that can be shared by jar files.
+	 */
+	private static boolean canShare(ClassHashSetList dataset) {
+		return dataset instanceof InMemoryClassHashSetList || dataset instanceof LazyClassHashSetList;
+	}
+	
+	private static void share(ClassHashSetList dataset, int index, int representative) {
+		if (dataset instanceof InMemoryClassHashSetList) {
+			((InMemoryClassHashSetList)dataset).share(index, representative);
+		} else if (dataset instanceof LazyClassHashSetList) {
+			((LazyClassHashSetList)dataset).share(index, representative);
+		}
+	}
+	
+	/**
+	 * @return the digest of the index-th set, taken from digest files if available.
+	 */
+	private static ClassHash getDigest(ClassHashSetList dataset, ArrayList<ClassHash> digests, int index) {
+		if (digests != null) {
+			return digests.get(index);
+		} else if (dataset instanceof LazyClassHashSetList) {
+			// Avoid decoding all the sets
+			return ((LazyClassHashSetList)dataset).getDigest(index);
+		} else {
+			return dataset.get(index).getContentDigest();
+		}
+	}
+	
+	/**
+	 * @return indices of the jar files represented by given jar files in the order of file names.
+	 */
+	private ArrayList<Integer> getMembers(TIntArrayList selected) {
+		ArrayList<Integer> members = new ArrayList<>(selected.size());
+		for (int i=0; i<selected.size(); ++i) {
+			TIntArrayList group = duplicates.get(selected.get(i));
+			if (group != null) {
+				for (int k=0; k<group.size(); ++k) {
+					members.add(group.get(k));
+				}
+			} else {
+				members.add(selected.get(i));
+			}
+		}
+		Collections.sort(members, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return filenames.get(o1).compareTo(filenames.get(o2));
+			}
+		});
+		return members;
+	}
+	
+	/**
+	 * Open signature files of a specified type.
+	 * If all the databases have fingerprint files (created by CreateDB -fingerprint),
+	 * the fingerprint files are used.
+	 * Otherwise, the full hash values are opened by openFullDataset.
+	 */
+	public static ClassHashSetList openDataset(String[] datafiles, int sig) throws IOException {
+		return openDataset(datafiles, sig, 0, 0);
+	}
+
+	/**
+	 * @param cacheSize and numThreads are passed to openSignatureFiles.
+	 */
+	public static ClassHashSetList openDataset(String[] datafiles, int sig, long cacheSize, int numThreads) throws IOException {
+		if (hasFingerprintFiles(datafiles, sig)) {
+			File[] fingerprintFiles = new File[datafiles.length];
+			for (int i=0; i<datafiles.length; ++i) {
+				fingerprintFiles[i] = new File(datafiles[i] + CreateDB.FingerprintTypeName[sig]);
+			}
+			return new MappedClassHashSetList(fingerprintFiles);
+		} else {
+			return openFullDataset(datafiles, sig, cacheSize, numThreads);
+		}
+	}
+	
+	private static boolean hasSetHashFiles(String[] datafiles, int sig) {
+		for (String filename: datafiles) {
+			if (!new File(filename + CreateDB.SetHashTypeName[sig]).exists()) return false;
+		}
+		return true;
+	}
+	
+	private static boolean hasFingerprintFiles(String[] datafiles, int sig) {
+		for (String filename: datafiles) {
+			if (!new File(filename + CreateDB.FingerprintTypeName[sig]).exists()) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Open signature files of a specified type including full hash values.
+	 * If all the databases have dictionary-encoded files (created by CreateDB -dictionary),
+	 * the sets are loaded as arrays of IDs.
+	 * Otherwise, the signature files are opened by openSignatureFiles.
+	 */
+	public static ClassHashSetList openFullDataset(String[] datafiles, int sig) throws IOException {
+		return openFullDataset(datafiles, sig, 0, 0);
+	}
+
+	/**
+	 * @param cacheSize and numThreads are passed to openSignatureFiles.
+	 */
+	public static ClassHashSetList openFullDataset(String[] datafiles, int sig, long cacheSize, int numThreads) throws IOException {
+		File[] dictionaryFiles = new File[datafiles.length];
+		File[] idFiles = new File[datafiles.length];
+		boolean dictionary = true;
+		for (int i=0; i<datafiles.length; ++i) {
+			dictionaryFiles[i] = new File(datafiles[i] + CreateDB.DictionaryTypeName[sig]);
+			idFiles[i] = new File(datafiles[i] + CreateDB.IdTypeName[sig]);
+			dictionary &= dictionaryFiles[i].exists() && idFiles[i].exists();
+		}
+		if (dictionary) {
+			return new DictionaryClassHashSetList(dictionaryFiles, idFiles);
+		} else {
+			return openSignatureFiles(datafiles, sig, cacheSize, numThreads);
+		}
+	}
+
+	/**
+	 * Open signature files of a specified type.
+	 * If all the databases have memory-mapped files (created by CreateDB -mapped or ConvertDB), 
+	 * the files are directly used without loading the content to the heap.
+	 * Otherwise, "*.bin" files are loaded.
+	 */
+	public static ClassHashSetList openSignatureFiles(String[] datafiles, int sig) throws IOException {
+		return openSignatureFiles(datafiles, sig, 0, 0);
+	}
+
+	/**
+	 * @param cacheSize specifies a memory budget in bytes.
+	 * If it is positive and all the "*.bin" files are delta-encoded,
+	 * the sets are decoded on demand and kept in a cache bounded by the budget.
+	 * Zero loads all the sets into the heap.
+	 * @param numThreads specifies the total number of threads loading "*.bin" files;
+	 * the files are loaded in parallel, and each file is decoded by a share of the threads.
+	 * Zero means the default of Concurrent.
+	 */
+	public static ClassHashSetList openSignatureFiles(String[] datafiles, int sig, long cacheSize, int numThreads) throws IOException {
+		File[] mappedFiles = new File[datafiles.length];
+		File[] signatureFiles = new File[datafiles.length];
+		boolean mapped = true;
+		boolean delta = cacheSize > 0;
+		for (int i=0; i<datafiles.length; ++i) {
+			mappedFiles[i] = new File(datafiles[i] + CreateDB.MappedSignatureTypeName[sig]);
+			signatureFiles[i] = new File(datafiles[i] + CreateDB.SignatureTypeName[sig]);
+			mapped &= mappedFiles[i].exists();
+			delta = delta && ClassHashSetReader.isDeltaFile(signatureFiles[i]);
+		}
+		if (mapped) {
+			return new MappedClassHashSetList(mappedFiles);
+		} else if (delta) {
+			return new LazyClassHashSetList(signatureFiles, cacheSize);
+		} else {
+			// Load the files in parallel and concatenate them in the given order
+			int threads = (numThreads > 0) ? numThreads : Concurrent.getDefaultThreadCount();
+			Concurrent concurrent = new Concurrent(Math.min(threads, signatureFiles.length));
+			final int blockThreads = Math.max(1, threads / signatureFiles.length);
+			ArrayList<Future<ArrayList<ClassHashSet>>> futures = new ArrayList<>();
+			for (final File f: signatureFiles) {
+				futures.add(concurrent.submit(new Callable<ArrayList<ClassHashSet>>() {
+					@Override
+					public ArrayList<ClassHashSet> call() throws IOException {
+						return load(f, blockThreads);
+					}
+				}));
+			}
+			InMemoryClassHashSetList dataset = new InMemoryClassHashSetList();
+			try {
+				for (Future<ArrayList<ClassHashSet>> future: futures) {
+					dataset.addAll(getResult(future));
+				}
+			} finally {
+				concurrent.waitComplete();
+			}
+			return dataset;
+		}
+	}
+	
+	/**
+	 * @return the document frequency of hash values of the specified type, 
+	 * or null if some databases do not have the frequency files.
+	 */
+	public static DocumentFrequency openDocumentFrequency(String[] datafiles, int sig) throws IOException {
+		File[] files = new File[datafiles.length];
+		for (int i=0; i<datafiles.length; ++i) {
+			files[i] = new File(datafiles[i] + CreateDB.FrequencyTypeName[sig]);
+			if (!files[i].exists()) return null;
+		}
+		return new DocumentFrequency(files);
+	}
+	
+	/**
+	 * @return MinHash signatures of the specified type, 
+	 * or null if some databases do not have the MinHash files.
+	 */
+	public static MinHashIndex openMinHashIndex(String[] datafiles, int sig) throws IOException {
+		File[] files = new File[datafiles.length];
+		for (int i=0; i<datafiles.length; ++i) {
+			files[i] = new File(datafiles[i] + CreateDB.MinHashTypeName[sig]);
+			if (!files[i].exists()) return null;
+		}
+		return new MinHashIndex(files);
+	}
+	
+	/**
+	 * Open index files of a specified type. 
+	 * @return an index if all the databases have index files.  Otherwise, null.
+	 */
+	public static InvertedIndex openIndex(String[] datafiles, int sig) throws IOException {
+		File[] indexFiles = new File[datafiles.length];
+		for (int i=0; i<datafiles.length; ++i) {
+			indexFiles[i] = new File(datafiles[i] + CreateDB.IndexTypeName[sig]);
+			if (!indexFiles[i].exists()) return null;
+		}
+		return new InvertedIndex(indexFiles);
+	}
+	
+	public static ArrayList<ClassHashSet> load(File file) throws IOException {
+		return load(file, 0);
+	}
+	
+	/**
+	 * @param numThreads is passed to ClassHashSetReader.readAll.
+	 */
+	public static ArrayList<ClassHashSet> load(File file, int numThreads) throws IOException {
+		ArrayList<ClassHashSet> dataset = ClassHashSetReader.readAll(file, numThreads);
+		if (DEBUG) {
+			for (ClassHashSet set: dataset) {
+				System.out.println(set.size());
+				for (ClassHash h: set) {
+					System.out.println(h.toString());
+				}
+			}
+		}
+		return dataset;
+	}
+	
+	public static ArrayList<ClassHash> loadPackageHashList(File file) throws IOException {
+		ArrayList<ClassHash> list = new ArrayList<>();
+		FileInputStream f = new FileInputStream(file);
+		ObjectInputStream in = new ObjectInputStream(f);
+		try {
+			for (;;) {
+				list.add(new ClassHash(in));
+			}
+		} catch (EOFException e) {
+			return list;
+		} catch (IOException e) {
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the digests of the sets of a specified type in all the databases,
+	 * or null if some databases do not have the digest files.
+	 */
+	public static ArrayList<ClassHash> openDigests(String[] datafiles, int sig) throws IOException {
+		for (String filename: datafiles) {
+			if (!new File(filename + CreateDB.DigestTypeName[sig]).exists()) return null;
+		}
+		ArrayList<ClassHash> digests = new ArrayList<>();
+		for (String filename: datafiles) {
+			File file = new File(filename + CreateDB.DigestTypeName[sig]);
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+				if (in.readInt() != CreateDB.DIGEST_MAGIC || in.readInt() != CreateDB.DIGEST_VERSION) {
+					throw new IOException("Unsupported digest file: " + file.getAbsolutePath());
+				}
+				int size = in.readInt();
+				byte[] buf = new byte[ClassHash.SHA1LENGTH];
+				for (int i=0; i<size; ++i) {
+					in.readFully(buf);
+					digests.add(new ClassHash(buf.clone()));
+				}
+			}
+		}
+		return digests;
+	}
+
+	/**
+	 * Load a set hash file created by CreateDB.createSetHash.
+	 */
+	public static TLongArrayList loadSetHashList(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != CreateDB.SETHASH_MAGIC || in.readInt() != CreateDB.SETHASH_VERSION) {
+				throw new IOException("Unsupported set hash file: " + file.getAbsolutePath());
+			}
+			int size = in.readInt();
+			TLongArrayList list = new TLongArrayList(size);
+			for (int i=0; i<size; ++i) {
+				list.add(in.readLong());
+			}
+			return list;
+		}
+	}
+	
+	
+	public ArrayList<Report> analyzeIngredients(Component target, boolean filterByPackage) {
+		return analyzeIngredients(target, filterByPackage, null);
+	}
+	
+	/**
+	 * @param stats receives the numbers of candidates and excluded classes if it is not null.
+	 */
+	public ArrayList<Report> analyzeIngredients(Component target, boolean filterByPackage, CandidateStatistics stats) {
+		
+		ArrayList<Report> result = new ArrayList<>();
+		ArrayList<ClassHash> hasharray = target.createHashList(ComponentEntry.SIG_CLASSNAME);
+		ClassHashSet nameHash = new ClassHashSet(hasharray);
+		
+		TargetComponent app = new TargetComponent(target, comparisonSig);
+		
+		// A target identical to jar files in the database is reported without comparison with the other jar files
+		TIntArrayList copies = findExactCopies(app.getContent(), nameHash, app.getPackageHash(), filterByPackage);
+		if (copies != null) {
+			// Classes in the stop-list are never reported, as in the comparison below
+			ClassHashSet reported = app.getContent();
+			if (stopCodes != null) {
+				reported = new ClassHashSet(reported);
+				reported.removeAll(stopCodes);
+			}
+			addReport(app, copies, reported, result);
+			return result;
+		}
+		
+		// Classes in the stop-list are excluded from the comparison
+		ClassHashSet candidateNames = nameHash;
+		ClassHashSet searched = app.getContent();
+		if (stopNames != null) {
+			candidateNames = new ClassHashSet(nameHash);
+			candidateNames.removeAll(stopNames);
+			searched = new ClassHashSet(searched);
+			searched.removeAll(stopCodes);
+			if (stats != null) {
+				long skipped = 0;
+				for (ClassHash h: nameHash) {
+					if (stopNames.count(h) > 0) skipped += nameFrequency.getFrequency(h);
+				}
+				stats.setStopList(nameHash.size() - candidateNames.size(), app.getContent().size() - searched.size(), skipped);
+			}
+		}
+		
+		// The intersection between the target and a jar file identical to a nested archive 
+		// is the content of the archive.
+		// The intersections are used in the analysis instead of comparison.
+		TIntObjectHashMap<ClassHashSet> knownIntersections = new TIntObjectHashMap<>();
+		for (Component nested: target.getNestedComponents()) {
+			ClassHashSet nestedContent = new ClassHashSet(nested.createHashList(comparisonSig));
+			ClassHashSet nestedNames = new ClassHashSet(nested.createHashList(ComponentEntry.SIG_CLASSNAME));
+			TIntArrayList nestedCopies = findExactCopies(nestedContent, nestedNames, nested.getPackageSetHash(), filterByPackage);
+			if (nestedCopies != null) {
+				if (stopCodes != null) {
+					nestedContent.removeAll(stopCodes);
+				}
+				for (int k=0; k<nestedCopies.size(); ++k) {
+					knownIntersections.put(nestedCopies.get(k), nestedContent);
+				}
+			}
+		}
+		
+		ClassHashSetList.Query codeQuery = codesigDataset.prepare(searched);
+		TargetSubset content = new TargetSubset(searched);
+		analyzeIngredients(app, content, nameHash, candidateNames, codeQuery, knownIntersections, filterByPackage, getAnalysisPool(), result, stats);
+		return result;
+	}
+	
+	/**
+	 * Compare a target with jar files and create reports.
+	 * Intersections are represented as subsets of the content of the target.
+	 * @param content is the content of the target.  Reported classes are removed from it.
+	 * @param candidateNames is a subset of the class names of the target used to find candidates.
+	 * @param knownIntersections specifies intersections between the target and jar files computed in advance.
+	 * @param concurrent executes the scan of candidates and the computation of intersections if it is not null.
+	 */
+	private void analyzeIngredients(final TargetComponent app, final TargetSubset content, final ClassHashSet nameHash, final ClassHashSet candidateNames, final ClassHashSetList.Query codeQuery, final TIntObjectHashMap<ClassHashSet> knownIntersections, final boolean filterByPackage, Concurrent concurrent, ArrayList<Report> result, CandidateStatistics stats) {
+		ArrayList<OverlapResult> overlaps; 
+		// Only the first representatives in sizeOrder can be candidates
+		final int candidateRange = countNotLarger(maxCandidateSize(nameHash.size(), candidateNames.size(), minOverlap));
+		if (classnameIndex != null) {
+			// Score only jar files sharing at least one class name with the target 
+			final TIntIntHashMap intersections = classnameIndex.countIntersections(candidateNames);
+			final TIntArrayList keys = new TIntArrayList(intersections.size());
+			for (int i: intersections.keys()) {
+				int rank = sizeRank[i];
+				if (rank >= 0 && rank < candidateRange) keys.add(i);
+			}
+			overlaps = collect(concurrent, keys.size(), new Chunk<OverlapResult>() {
+				@Override
+				public void run(int start, int end, ArrayList<OverlapResult> results) {
+					for (int k=start; k<end; ++k) {
+						int i = keys.get(k);
+						double nameOverlap = intersections.get(i) * 1.0 / classnameDataset.getSetSize(i);
+						if (nameOverlap >= minOverlap && isPackageCandidate(i, app.getPackageHash(), filterByPackage)) {
+							results.add(new OverlapResult(nameOverlap, filenames.get(i), i));
+						}
+					}
+				}
+			});
+		} else {
+			// Scan only the range of representatives
+			final ClassHashSetList.Query nameQuery = classnameDataset.prepare(candidateNames);
+			overlaps = collect(concurrent, candidateRange, new Chunk<OverlapResult>() {
+				@Override
+				public void run(int start, int end, ArrayList<OverlapResult> results) {
+					for (int k=start; k<end; k++) {
+						int i = sizeOrder[k];
+						if (isPackageCandidate(i, app.getPackageHash(), filterByPackage)) {
+							double nameOverlap = (minOverlap > 0) ? nameQuery.overlap(i, minOverlap) : nameQuery.overlap(i);
+							OverlapResult r = new OverlapResult(nameOverlap, filenames.get(i), i);
+							if (r.overlap > 0 && r.overlap >= minOverlap) {
+								results.add(r);
+							}
+						}
+					}
+				}
+			});
+		}
+		Collections.sort(overlaps);
+		if (stats != null) {
+			stats.setCandidateCount(overlaps.size());
+		}
+		
+		
+		final int appSize = content.size();
+		ArrayList<ArrayList<OverlapResult>> arrays = splitByOverlap(overlaps);
+		for (final ArrayList<OverlapResult> array: arrays) {
+			
+			// The content of the target is not modified until the intersections are computed
+			final boolean excludeReported = content.size() < appSize;
+			ArrayList<IntersectionResult> intersections = collect(concurrent, array.size(), new Chunk<IntersectionResult>() {
+				@Override
+				public void run(int start, int end, ArrayList<IntersectionResult> results) {
+					for (int i=start; i<end; ++i) {
+						OverlapResult overlap = array.get(i);
+						ClassHashSet known = knownIntersections.get(overlap.index);
+						TargetSubset intersection = content.createSubset(known != null ? known : codeQuery.getIntersectionSet(overlap.index));
+						if (excludeReported) {
+							// Exclude classes reported in the previous steps
+							intersection.retainAll(content);
+						}
+						IntersectionResult r = new IntersectionResult(overlap, codesigDataset.getSetSize(overlap.index), intersection);
+						if (r.intersection.size() > 0) {
+							results.add(r);
+						}
+					}
+				}
+			});
+			// Lazy greedy selection: an intersection in the queue may include classes 
+			// removed by later selections, so that its size is an upper bound. 
+			// It is updated only when it reaches the head of the queue.
+			PriorityQueue<IntersectionResult> queue = new PriorityQueue<>(intersections);
+			ArrayList<TargetSubset> removed = new ArrayList<>();
+			
+			while (true) {
+				
+				// Select the top (and the same content components)
+				IntersectionResult top = pollUpdated(queue, removed);
+				if (top == null) break;
+				ArrayList<IntersectionResult> selected = new ArrayList<>();
+				ArrayList<IntersectionResult> remaining = new ArrayList<>();
+				selected.add(top);
+				int topSize = top.intersection.size();
+				assert topSize > 0;
+				while (!queue.isEmpty() && queue.peek().intersection.size() >= topSize) {
+					IntersectionResult another = queue.poll();
+					another.update(removed);
+					if (another.intersection.equals(top.intersection)) {
+						selected.add(another);
+					} else if (another.intersection.size() > 0) {
+						remaining.add(another);
+					}
+				}
+				queue.addAll(remaining);
+				
+				// Create a report
+				TIntArrayList selectedIndices = new TIntArrayList(selected.size());
+				for (IntersectionResult r: selected) {
+					selectedIndices.add(r.index);
+					//orgIntersections.add(Integer.toString(r.originalIntersection));
+				}
+				addReport(app, selectedIndices, top.intersection.toClassHashSet(), result);
+				if (maxReports > 0 && result.size() >= maxReports) {
+					// The remaining jar files are never compared
+					return;
+				}
+
+				// Remove the selected classes from the target. 
+				// The remaining intersections are updated when they are polled. 
+				content.removeAll(top.intersection);
+				removed.add(top.intersection);
+				
+				//int originalSize = app.size(); 
+				//System.out.println(" -> " + app.size());
+			}
+		}
+	}
+	
+	/**
+	 * Create a report for selected jar files and jar files having the same content.
+	 * The report is not created if no classes in the intersection are verified. 
+	 */
+	private void addReport(TargetComponent app, TIntArrayList selectedIndices, ClassHashSet intersection, ArrayList<Report> result) {
+		ArrayList<Integer> members = getMembers(selectedIndices);
+		ArrayList<String> libnames = new ArrayList<>(members.size());
+		TIntArrayList libsizes = new TIntArrayList(members.size());
+		TIntArrayList indices = new TIntArrayList(members.size());
+		for (int index: members) {
+			libnames.add(filenames.get(index));
+			libsizes.add(codesigDataset.getSetSize(index));
+			indices.add(index);
+		}
+		ClassHashSet matched = verify(intersection, indices);
+		if (matched.size() > 0) {
+			ArrayList<String> matchedNames = app.getNames(matched);
+			result.add(new Report(libnames, matched.size(), libsizes, matchedNames));
+		}
+	}
+	
+	/**
+	 * Find jar files identical to a component using the set hash values of the jar files.
+	 * A jar file is identical if it has the same signatures and the same class names.
+	 * @return representatives of the identical jar files that are candidates for comparison, 
+	 * or null if no jar files are found.
+	 */
+	private TIntArrayList findExactCopies(ClassHashSet content, ClassHashSet nameHash, ClassHash packageHash, boolean filterByPackage) {
+		if (exactCopyIndex == null || content.size() == 0) return null;
+		TIntArrayList list = exactCopyIndex.get(content.getSetHash());
+		if (list == null) return null;
+		TIntArrayList copies = new TIntArrayList(list.size());
+		for (int k=0; k<list.size(); ++k) {
+			int i = list.get(k);
+			if (isCandidate(i, packageHash, nameHash, filterByPackage) &&
+				codesigDataset.getSetSize(i) == content.size() &&
+				content.intersection(codesigDataset.get(i)) == content.size() &&
+				classnameDataset.getSetSize(i) == nameHash.size() &&
+				nameHash.intersection(classnameDataset.get(i)) == nameHash.size()) {
+				copies.add(i);
+			}
+		}
+		return copies.isEmpty() ? null : copies;
+	}
+	
+	/**
+	 * A task processing a range of items.
+	 */
+	private interface Chunk<T> {
+		
+		/**
+		 * Process items in [start, end) and add the results to a list.
+		 */
+		public void run(int start, int end, ArrayList<T> results);
+	}
+	
+	/**
+	 * Split items into ranges and process them.
+	 * @param concurrent executes the ranges in parallel if it is not null.
+	 * @return the results of the ranges concatenated in the order of the items.
+	 */
+	private static <T> ArrayList<T> collect(Concurrent concurrent, final int size, final Chunk<T> chunk) {
+		ArrayList<T> results = new ArrayList<>();
+		if (concurrent == null || size <= MIN_CHUNK_SIZE) {
+			chunk.run(0, size, results);
+			return results;
+		}
+		int chunkSize = Math.max(MIN_CHUNK_SIZE, (size + concurrent.getThreadCount() * 4 - 1) / (concurrent.getThreadCount() * 4));
+		ArrayList<Future<ArrayList<T>>> futures = new ArrayList<>();
+		for (int i=0; i<size; i+=chunkSize) {
+			final int start = i;
+			final int end = Math.min(size, i + chunkSize);
+			futures.add(concurrent.submit(new Callable<ArrayList<T>>() {
+				@Override
+				public ArrayList<T> call() {
+					ArrayList<T> list = new ArrayList<>();
+					chunk.run(start, end, list);
+					return list;
+				}
+			}));
+		}
+		for (Future<ArrayList<T>> future: futures) {
+			try {
+				results.addAll(future.get());
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException)e.getCause();
+				} else {
+					throw new RuntimeException(e.getCause());
+				}
+			}
+		}
+		return results;
+	}
+
+	
+	/**
+	 * @return the first intersection in the order of the up-to-date sizes, or null if no intersections remain.
+	 * Out-of-date intersections polled from the queue are updated and put back to the queue. 
+	 * Empty intersections are discarded.
+	 */
+	private static IntersectionResult pollUpdated(PriorityQueue<IntersectionResult> queue, ArrayList<TargetSubset> removed) {
+		while (!queue.isEmpty()) {
+			IntersectionResult r = queue.poll();
+			if (r.isUpdated(removed)) {
+				return r;
+			}
+			r.update(removed);
+			if (r.intersection.size() > 0) {
+				queue.add(r);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Remove classes whose fingerprints match the selected jar files
+	 * but whose full hash values do not match, so that collisions of fingerprints never reach reports.
+	 * @return the given intersection if fingerprints are not used or not verified.
+	 */
+	private ClassHashSet verify(ClassHashSet intersection, TIntArrayList indices) {
+		if (verificationDataset == null) return intersection;
+		ClassHashSet verified = intersection;
+		for (int i=0; i<indices.size(); ++i) {
+			verified = verificationDataset.prepare(verified).getIntersectionSet(indices.get(i));
+		}
+		return verified;
+	}
+
+	/**
+	 * A jar file is compared with a target if the jar is not larger than the target.
+	 * INSIDE mode additionally excludes jar files having the same packages as the target.
+	 */
+	private boolean isCandidate(int index, ClassHash packageHash, ClassHashSet nameHash, boolean filterByPackage) {
+		return isPackageCandidate(index, packageHash, filterByPackage) && 
+				nameHash.size() >= classnameDataset.getSetSize(index);
+	}
+	
+	/**
+	 * The package condition of isCandidate for jar files whose sizes are already checked.
+	 */
+	private boolean isPackageCandidate(int index, ClassHash packageHash, boolean filterByPackage) {
+		return !filterByPackage || !packageHash.equals(packageSetList.get(index));
+	}
+
+	
+	public ArrayList<Report> analyzeBertilonage(Component target, boolean filterByPackage) {
+		assert !target.hasSkippedClasses(): "The Jaccard index needs all the classes of a target";
+		
+		TargetComponent app = new TargetComponent(target, comparisonSig);
+		
+		// Candidates are jar files sharing at least one class with the target.
+		// Jar files having the same content share the intersection.
+		ClassHashSetList.Query codeQuery = codesigDataset.prepare(app.getContent());
+		TIntObjectHashMap<ClassHashSet> intersections = new TIntObjectHashMap<>();
+		ArrayList<JaccardResult> candidates = new ArrayList<>(); 
+		if (codesigIndex != null) {
+			// Intersections are computed only when they are compared with others
+			TIntIntHashMap counts = codesigIndex.countIntersections(app.getContent());
+			for (TIntIntIterator it = counts.iterator(); it.hasNext(); ) {
+				it.advance();
+				int i = it.key();
+				if (representatives[i] == i && (!filterByPackage || !app.getPackageHash().equals(packageSetList.get(i)))) {
+					addJaccardResults(app.getContent().size(), i, it.value(), candidates);
+				}
+			}
+		} else {
+			for (int i=0; i<filenames.size(); i++) {
+				if (representatives[i] == i && (!filterByPackage || !app.getPackageHash().equals(packageSetList.get(i)))) {
+					ClassHashSet intersection = codeQuery.getIntersectionSet(i);
+					if (intersection.size() > 0) {
+						intersections.put(i, intersection);
+						addJaccardResults(app.getContent().size(), i, intersection.size(), candidates);
+					}
+				}
+			}
+		}
+		return selectBertilonage(app, candidates, codeQuery, intersections);
+	}
+	
+	/**
+	 * Software Bertillonage comparing a target only with jar files found by MinHash LSH.
+	 * The Jaccard index of the candidates is exactly computed,
+	 * while jar files that are not found by LSH are missed. 
+	 * The exact analysis is performed if the database has no MinHash files.
+	 */
+	public ArrayList<Report> analyzeApproximateBertilonage(Component target, boolean filterByPackage) {
+		if (codesigMinHash == null) {
+			return analyzeBertilonage(target, filterByPackage);
+		}
+		assert !target.hasSkippedClasses(): "The Jaccard index needs all the classes of a target";
+		TargetComponent app = new TargetComponent(target, comparisonSig);
+		if (app.getContent().size() == 0) {
+			return new ArrayList<>();
+		}
+		ClassHashSetList.Query codeQuery = codesigDataset.prepare(app.getContent());
+		TIntObjectHashMap<ClassHashSet> intersections = new TIntObjectHashMap<>();
+		ArrayList<JaccardResult> candidates = new ArrayList<>(); 
+		
+		// Rank candidates by the number of the same values in their signatures
+		TIntIntHashMap found = codesigMinHash.findCandidates(codesigMinHash.computeSignature(app.getContent()), lshMinBandMatches);
+		long[] order = new long[found.size()];
+		int n = 0;
+		for (TIntIntIterator it = found.iterator(); it.hasNext(); ) {
+			it.advance();
+			int i = it.key();
+			if (representatives[i] == i && (!filterByPackage || !app.getPackageHash().equals(packageSetList.get(i)))) {
+				order[n++] = ((long)(codesigMinHash.getHashCount() - it.value()) << 32) | i;
+			}
+		}
+		Arrays.sort(order, 0, n);
+		if (lshMaxCandidates > 0 && n > lshMaxCandidates) {
+			n = lshMaxCandidates;
+		}
+		for (int k=0; k<n; ++k) {
+			int i = (int)order[k];
+			ClassHashSet intersection = getIntersection(i, codeQuery, intersections);
+			if (intersection.size() > 0) {
+				addJaccardResults(app.getContent().size(), i, intersection.size(), candidates);
+			}
+		}
+		return selectBertilonage(app, candidates, codeQuery, intersections);
+	}
+	
+	/**
+	 * Select jar files in the descending order of the Jaccard index and create reports.
+	 * @param intersections includes intersections computed in advance. 
+	 * The other intersections are computed when they are compared with others.
+	 */
+	private ArrayList<Report> selectBertilonage(TargetComponent app, ArrayList<JaccardResult> candidates, ClassHashSetList.Query codeQuery, TIntObjectHashMap<ClassHashSet> intersections) {
+		ArrayList<Report> result = new ArrayList<>();
+		
+		// Results having the same intersection have the same intersection size.
+		// Results of a project are removed when the project is selected. 
+		TIntObjectHashMap<ArrayList<JaccardResult>> sameSize = new TIntObjectHashMap<>();
+		HashMap<String, ArrayList<JaccardResult>> sameProject = new HashMap<>();
+		for (JaccardResult r: candidates) {
+			ArrayList<JaccardResult> list = sameSize.get(r.intersectionSize);
+			if (list == null) {
+				list = new ArrayList<>(1);
+				sameSize.put(r.intersectionSize, list);
+			}
+			list.add(r);
+			list = sameProject.get(r.projectname);
+			if (list == null) {
+				list = new ArrayList<>(1);
+				sameProject.put(r.projectname, list);
+			}
+			list.add(r);
+		}
+		
+		PriorityQueue<JaccardResult> queue = new PriorityQueue<>(candidates);
+		while (!queue.isEmpty()) {
+				
+			// Select the top (and the same content components)
+			JaccardResult top = queue.poll();
+			if (top.removed) {
+				continue;
+			}
+			
+			ClassHashSet topIntersection = getIntersection(top.representative, codeQuery, intersections);
+			ArrayList<JaccardResult> selected = new ArrayList<>();
+			for (JaccardResult j: sameSize.get(top.intersectionSize)) {
+				if (!j.removed && topIntersection.equals(getIntersection(j.representative, codeQuery, intersections))) {
+					selected.add(j);
+				}
+			}
+			assert selected.size() > 0;
+			Collections.sort(selected);
+				
+			// Create a report
+			ArrayList<String> libnames = new ArrayList<>();
+			TIntArrayList libsize = new TIntArrayList();
+			TIntArrayList indices = new TIntArrayList();
+			for (JaccardResult r: selected) {
+				libnames.add(r.libname);
+				libsize.add(r.libsize);
+				indices.add(r.index);
+			}
+			for (JaccardResult r: selected) {
+				for (JaccardResult another: sameProject.get(r.projectname)) {
+					another.removed = true;
+				}
+			}
+			ClassHashSet matched = verify(topIntersection, indices);
+			if (matched.size() > 0) {
+				ArrayList<String> matchedNames = app.getNames(matched);
+				result.add(new Report(libnames, matched.size(), libsize, matchedNames));
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return the intersection between a target and a representative.
+	 * The intersection is computed when it is requested for the first time.
+	 */
+	private static ClassHashSet getIntersection(int representative, ClassHashSetList.Query codeQuery, TIntObjectHashMap<ClassHashSet> intersections) {
+		ClassHashSet intersection = intersections.get(representative);
+		if (intersection == null) {
+			intersection = codeQuery.getIntersectionSet(representative);
+			intersections.put(representative, intersection);
+		}
+		return intersection;
+	}
+	
+	/**
+	 * Create a result for a representative and the jar files having the same content.
+	 */
+	private void addJaccardResults(int appsize, int representative, int intersectionSize, ArrayList<JaccardResult> results) {
+		TIntArrayList group = duplicates.get(representative);
+		for (int k=0; k<(group != null ? group.size() : 1); ++k) {
+			int index = (group != null) ? group.get(k) : representative;
+			results.add(new JaccardResult(appsize, index, representative, filenames.get(index), codesigDataset.getSetSize(index), intersectionSize));
+		}
+	}
+	
+
+
+	
+	private static class IntersectionResult implements Comparable<IntersectionResult> {
+
+		private String libname;
+		private int index;
+		private TargetSubset intersection; 
+		private int libsize;
+		
+
+		/**
+		 * The number of removed sets already subtracted from the intersection.
+		 */
+		private int applied;
+
+		IntersectionResult(OverlapResult overlap, int libsize, TargetSubset intersection) {
+			this.libname = overlap.libname;
+			this.index = overlap.index;
+			this.libsize = libsize;
+			this.intersection = intersection;
+		}
+		
+		public boolean isUpdated(ArrayList<TargetSubset> removed) {
+			return applied == removed.size();
+		}
+		
+		/**
+		 * Subtract the sets removed after the last update from the intersection.
+		 */
+		public void update(ArrayList<TargetSubset> removed) {
+			for (; applied < removed.size(); ++applied) {
+				intersection.removeAll(removed.get(applied));
+			}
+		}
+		
+		@Override
+		public int compareTo(IntersectionResult another) {
+			int c = -Integer.compare(this.intersection.size(), another.intersection.size());
+			if (c == 0) {
+				return this.libname.compareTo(another.libname);
+			} else {
+				return c;
+			}
+		}
+		
+	}
+	
+
+	private static ArrayList<ArrayList<OverlapResult>> splitByOverlap(ArrayList<OverlapResult> overlaps) {
+		ArrayList<ArrayList<OverlapResult>> splitArrays = new ArrayList<>();
+		if (overlaps.size() == 0) return splitArrays;
+		
+		ArrayList<OverlapResult> items = new ArrayList<>();
+		items.add(overlaps.get(0));
+		for (int i=1; i<overlaps.size(); i++) {
+			OverlapResult current = overlaps.get(i);
+			if (current.overlap == items.get(0).overlap) {
+				items.add(current);
+			} else {
+				splitArrays.add(items);
+				items = new ArrayList<>();
+				items.add(current);
+			}
+		}
+		if (items.get(0).overlap > 0) {
+			splitArrays.add(items);
+		}
+		
+		return splitArrays;
+	}
+
+	
+	private static class OverlapResult implements Comparable<OverlapResult> {
+
+		private String libname;
+		private double overlap;
+		private int index;
+		
+		OverlapResult(double nameOverlap, String libname, int index) {
+			this.libname = libname;
+			this.overlap = nameOverlap;
+			this.index = index;
+		}
+		
+		@Override
+		public int compareTo(OverlapResult another) {
+			int c = -Double.compare(this.overlap, another.overlap);
+			if (c == 0) {
+				return this.libname.compareTo(another.libname);
+			} else {
+				return c;
+			}
+		}
+		
+		public String toString() {
+			return libname + ";" + Double.toString(overlap); 
+		}
+		
+	}
+	
+	private static class JaccardResult implements Comparable<JaccardResult> {
+
+		private String libname;
+		private int index;
+		private int representative;
+		private String projectname;
+		private int intersectionSize;
+		private int libsize;
+		private double jaccard;
+		private boolean removed;
+		
+		JaccardResult(int appsize, int index, int representative, String libname, int libsize, int intersectionSize) {
+			this.libname = libname;
+			this.index = index;
+			this.representative = representative;
+			this.projectname = ComponentUtil.getProjectPath(libname);
+			this.libsize = libsize;
+			this.intersectionSize = intersectionSize;
+			this.jaccard = (intersectionSize * 1.0) / (appsize + libsize - intersectionSize);
+		}
+		
+		@Override
+		public int compareTo(JaccardResult another) {
+			int c = -Double.compare(this.jaccard, another.jaccard);
+			if (c == 0) {
+				return this.libname.compareTo(another.libname);
+			} else {
+				return c;
+			}
+		}
+		
+		public String toString() {
+			return libname + ";" + Double.toString(jaccard); 
+		}
+		
+	}
+	
+
+}
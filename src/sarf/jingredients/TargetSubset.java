@@ -0,0 +1,211 @@
+package sarf.jingredients;
+
+import java.util.Arrays;
+
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.hash.ClassHashSet;
+
+/**
+ * A subset of the classes of a target represented by a bitset.
+ * The i-th bit corresponds to the i-th distinct hash value of the target.
+ * The numbers of instances are recorded only for hash values
+ * appearing two or more times in the target.
+ * Set operations between subsets of the same target do not allocate memory.
+ * A subset also maintains a hash value independent of the order of elements,
+ * so that most of unequal subsets are compared in constant time.
+ */
+public class TargetSubset {
+
+	private Target target;
+	private long[] bits;
+	private int[] counts;
+	private int size;
+	private long setHash;
+
+	/**
+	 * Create a subset including all the classes of a target.
+	 */
+	public TargetSubset(ClassHashSet content) {
+		this.target = new Target(content);
+		int distinct = content.distinctSize();
+		this.bits = new long[(distinct + 63) >>> 6];
+		for (int i=0; i<distinct; ++i) {
+			bits[i >>> 6] |= 1L << i;
+		}
+		this.counts = target.multiCount.clone();
+		this.size = content.size();
+		for (int i=0; i<distinct; ++i) {
+			setHash += target.elementHash[i] * content.countAt(i);
+		}
+	}
+
+	private TargetSubset(Target target) {
+		this.target = target;
+		this.bits = new long[(target.content.distinctSize() + 63) >>> 6];
+		this.counts = new int[target.multiPosition.length];
+		this.size = 0;
+	}
+
+	/**
+	 * Translate a subset of the same target into a bitset.
+	 * @param subset must be a subset of the target.
+	 */
+	public TargetSubset createSubset(ClassHashSet subset) {
+		TargetSubset result = new TargetSubset(target);
+		int[] positions = new int[subset.distinctSize()];
+		int[] instances = new int[subset.distinctSize()];
+		int n = target.content.locate(subset, positions, instances);
+		assert n == subset.distinctSize(): "Not a subset of the target";
+		for (int k=0; k<n; ++k) {
+			int i = positions[k];
+			result.bits[i >>> 6] |= 1L << i;
+			result.setHash += target.elementHash[i] * instances[k];
+			if (target.multiPosition.length > 0) {
+				int rank = Arrays.binarySearch(target.multiPosition, i);
+				if (rank >= 0) result.counts[rank] = instances[k];
+			}
+		}
+		result.updateSize();
+		return result;
+	}
+
+	/**
+	 * @return the number of class instances in the subset.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Remove the instances of another subset from the receiver.
+	 */
+	public void removeAll(TargetSubset another) {
+		assert target == another.target;
+		for (int w=0; w<bits.length; ++w) {
+			setWord(w, bits[w] & ~another.bits[w]);
+		}
+		for (int r=0; r<counts.length; ++r) {
+			setCount(r, Math.max(0, counts[r] - another.counts[r]));
+		}
+		updateSize();
+	}
+
+	/**
+	 * Keep only the instances included in another subset.
+	 */
+	public void retainAll(TargetSubset another) {
+		assert target == another.target;
+		for (int w=0; w<bits.length; ++w) {
+			setWord(w, bits[w] & another.bits[w]);
+		}
+		for (int r=0; r<counts.length; ++r) {
+			setCount(r, Math.min(counts[r], another.counts[r]));
+		}
+		updateSize();
+	}
+
+	/**
+	 * @return a hash value of the subset independent of the order of elements.
+	 */
+	public long getSetHash() {
+		return setHash;
+	}
+
+	public boolean equals(TargetSubset another) {
+		return size == another.size && setHash == another.setHash && Arrays.equals(bits, another.bits) && Arrays.equals(counts, another.counts);
+	}
+
+	/**
+	 * @return the subset as a subset of the target content.
+	 */
+	public ClassHashSet toClassHashSet() {
+		int[] positions = new int[size];
+		int[] instances = new int[size];
+		int n = 0;
+		int r = 0;
+		for (int w=0; w<bits.length; ++w) {
+			for (long word = bits[w]; word != 0; word &= word - 1) {
+				int i = (w << 6) + Long.numberOfTrailingZeros(word);
+				while (r < counts.length && target.multiPosition[r] < i) r++;
+				positions[n] = i;
+				instances[n] = (r < counts.length && target.multiPosition[r] == i) ? counts[r] : 1;
+				n++;
+			}
+		}
+		return target.content.subset(positions, instances, n);
+	}
+
+	/**
+	 * Replace a word of the bitset with a subset of the word.
+	 * Hash values appearing multiple times are updated by setCount.
+	 */
+	private void setWord(int w, long word) {
+		long removed = bits[w] & ~word & ~target.multiMask[w];
+		for (; removed != 0; removed &= removed - 1) {
+			setHash -= target.elementHash[(w << 6) + Long.numberOfTrailingZeros(removed)];
+		}
+		bits[w] = word;
+	}
+
+	private void setCount(int rank, int count) {
+		int i = target.multiPosition[rank];
+		setHash += target.elementHash[i] * (count - counts[rank]);
+		counts[rank] = count;
+		if (count > 0) {
+			bits[i >>> 6] |= 1L << i;
+		} else {
+			bits[i >>> 6] &= ~(1L << i);
+		}
+	}
+
+	private void updateSize() {
+		int s = 0;
+		for (long word: bits) {
+			s += Long.bitCount(word);
+		}
+		for (int c: counts) {
+			if (c > 1) s += c - 1;
+		}
+		size = s;
+	}
+
+
+	/**
+	 * Classes of a target shared by its subsets.
+	 */
+	private static class Target {
+
+		private ClassHashSet content;
+		private long[] elementHash;
+		private int[] multiPosition;
+		private int[] multiCount;
+		private long[] multiMask;
+
+		public Target(ClassHashSet content) {
+			this.content = content;
+			elementHash = new long[content.distinctSize()];
+			int index = 0;
+			for (ClassHash h: content) {
+				elementHash[index++] = h.getFingerprint();
+			}
+			int multi = 0;
+			for (int i=0; i<content.distinctSize(); ++i) {
+				if (content.countAt(i) > 1) multi++;
+			}
+			multiPosition = new int[multi];
+			multiCount = new int[multi];
+			multiMask = new long[(content.distinctSize() + 63) >>> 6];
+			int r = 0;
+			for (int i=0; i<content.distinctSize(); ++i) {
+				int c = content.countAt(i);
+				if (c > 1) {
+					multiPosition[r] = i;
+					multiCount[r] = c;
+					multiMask[i >>> 6] |= 1L << i;
+					r++;
+				}
+			}
+		}
+	}
+
+}
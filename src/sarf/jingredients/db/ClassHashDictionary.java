@@ -0,0 +1,141 @@
+package sarf.jingredients.db;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.hash.ClassHashSet;
+
+/**
+ * A dictionary assigning a dense integer ID to each distinct hash value in a database.
+ * The ID of a hash value is its position in the sorted list of all the hash values,
+ * so that the order of IDs is the same as the order of hash values.
+ * The file has the following layout (big endian):
+ * <pre>
+ * header:  int MAGIC, int VERSION, int hash length, int the number of hash values
+ * data:    sorted distinct hash values
+ * </pre>
+ */
+public class ClassHashDictionary {
+
+	public static final int MAGIC = 0x4a494844; // "JIHD"
+	public static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+
+	private ByteBuffer hashes;
+	private int size;
+
+	/**
+	 * Map a dictionary file into memory.
+	 */
+	public ClassHashDictionary(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt(0) != MAGIC || header.getInt(8) != ClassHash.SHA1LENGTH) {
+				throw new IOException("Unsupported dictionary file: " + file.getAbsolutePath());
+			}
+			size = header.getInt(12);
+			long dataSize = (long)size * ClassHash.SHA1LENGTH;
+			if (dataSize > Integer.MAX_VALUE) {
+				throw new IOException("Too many hash values in a dictionary file: " + file.getAbsolutePath());
+			}
+			hashes = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, dataSize);
+		}
+	}
+
+	/**
+	 * @return the number of hash values in the dictionary.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the ID of a hash value, or -1 if the hash value is not in the dictionary.
+	 */
+	public int getId(ClassHash h) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int c = h.compareTo(hashes, mid * ClassHash.SHA1LENGTH);
+			if (c > 0) {
+				low = mid + 1;
+			} else if (c < 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Compare a hash value with the hash value of an ID.
+	 * @return the same as ClassHash.compareTo.
+	 */
+	public int compare(ClassHash h, int id) {
+		return h.compareTo(hashes, id * ClassHash.SHA1LENGTH);
+	}
+
+	/**
+	 * Compare the hash value of an ID with that of another dictionary.
+	 * @return a negative value, zero, or a positive value as the hash value is less than, 
+	 * the same as, or greater than the other one in the order of ClassHash.
+	 */
+	public int compare(int id, ClassHashDictionary another, int anotherId) {
+		int p1 = id * ClassHash.SHA1LENGTH;
+		int p2 = anotherId * ClassHash.SHA1LENGTH;
+		for (int i=0; i<ClassHash.SHA1LENGTH; ++i) {
+			byte b1 = hashes.get(p1 + i);
+			byte b2 = another.hashes.get(p2 + i);
+			if (b1 != b2) {
+				return ClassHash.compareUnsignedByte(b1, b2);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the hash value for an ID.
+	 */
+	public ClassHash getHash(int id) {
+		return new ClassHash(hashes, id * ClassHash.SHA1LENGTH);
+	}
+
+	/**
+	 * Create a dictionary file including all the hash values in a given list of sets.
+	 */
+	public static void write(ClassHashSetList dataset, File file) throws IOException {
+		HashSet<ClassHash> distinct = new HashSet<>();
+		for (int i=0; i<dataset.size(); ++i) {
+			for (ClassHash h: dataset.get(i)) {
+				distinct.add(h);
+			}
+		}
+		ArrayList<ClassHash> sorted = new ArrayList<>(distinct);
+		distinct = null;
+		Collections.sort(sorted);
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(ClassHash.SHA1LENGTH);
+		out.writeInt(sorted.size());
+		for (ClassHash h: sorted) {
+			h.writeTo(out);
+		}
+		out.close();
+	}
+
+}
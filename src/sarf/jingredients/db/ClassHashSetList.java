@@ -0,0 +1,65 @@
+package sarf.jingredients.db;
+
+import sarf.jingredients.hash.ClassHashSet;
+
+/**
+ * A list of ClassHashSet objects, one for each jar file in a database.
+ * An implementation may keep the sets in the heap or
+ * read them from a file on demand.
+ */
+public interface ClassHashSetList {
+
+	/**
+	 * @return the number of sets (jar files) in the list.
+	 */
+	public int size();
+
+	/**
+	 * @return the number of elements in the index-th set.
+	 */
+	public int getSetSize(int index);
+
+	/**
+	 * @return the index-th set.
+	 * An implementation may create a new instance for each call.
+	 */
+	public ClassHashSet get(int index);
+
+	/**
+	 * Prepare a comparison between a target and sets in the list.
+	 * An implementation may translate the target into its internal representation
+	 * so that the translation is performed only once for a target.
+	 * The target must not be modified while the query is used.
+	 */
+	public Query prepare(ClassHashSet target);
+
+
+	/**
+	 * A comparison between a target and sets in the list.
+	 */
+	public interface Query {
+
+		/**
+		 * Compute a overlap coefficient between the target and the index-th set.
+		 * @return |target & set| / |set|
+		 */
+		public double overlap(int index);
+
+		/**
+		 * Compute a overlap coefficient only if it may reach a threshold.
+		 * An implementation terminates the comparison 
+		 * as soon as the threshold turns out to be unreachable.
+		 * @return |target & set| / |set| if it is the same as or larger than the threshold.
+		 * Otherwise, zero.
+		 */
+		public double overlap(int index, double threshold);
+
+		/**
+		 * Compute an intersection between the target and the index-th set.
+		 * @return a subset of the target.
+		 */
+		public ClassHashSet getIntersectionSet(int index);
+
+	}
+
+}
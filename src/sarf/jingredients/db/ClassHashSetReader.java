@@ -0,0 +1,262 @@
+package sarf.jingredients.db;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import sarf.jingredients.hash.ClassHashSet;
+import sarf.jingredients.util.Concurrent;
+
+/**
+ * A reader to load sets from a signature file.
+ * The reader accepts both files created by DeltaClassHashSetWriter
+ * and gzip-compressed files created by older versions of CreateDB.
+ * A set appearing twice in a delta-encoded file is loaded as a single shared instance.
+ */
+public class ClassHashSetReader {
+
+	private ObjectInputStream gzipStream;
+
+	private RandomAccessFile deltaFile;
+	private long[] blockOffset;
+	private int[] blockStoredLength;
+	private int[] blockLength;
+	private int[] blockSetCount;
+	private int nextBlock;
+	private Block currentBlock;
+	private int nextSet;
+	private ArrayList<ClassHashSet> loaded;
+
+	public ClassHashSetReader(File file) throws IOException {
+		if (isDeltaFile(file)) {
+			openDeltaFile(file);
+		} else {
+			gzipStream = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16)));
+		}
+	}
+
+	/**
+	 * @return true if a file is created by DeltaClassHashSetWriter.
+	 */
+	public static boolean isDeltaFile(File file) throws IOException {
+		boolean delta = false;
+		if (file.length() >= DeltaClassHashSetWriter.HEADER_SIZE + DeltaClassHashSetWriter.FOOTER_SIZE) {
+			try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+				delta = in.readInt() == DeltaClassHashSetWriter.MAGIC;
+				if (delta && in.readInt() != DeltaClassHashSetWriter.VERSION) {
+					throw new IOException("Unsupported database file: " + file.getAbsolutePath());
+				}
+			}
+		}
+		return delta;
+	}
+
+	private void openDeltaFile(File file) throws IOException {
+		deltaFile = new RandomAccessFile(file, "r");
+		deltaFile.seek(deltaFile.length() - DeltaClassHashSetWriter.FOOTER_SIZE);
+		long indexStart = deltaFile.readLong();
+		int blockCount = deltaFile.readInt();
+		if (deltaFile.readInt() != DeltaClassHashSetWriter.MAGIC) {
+			deltaFile.close();
+			throw new IOException("Broken database file: " + file.getAbsolutePath());
+		}
+		byte[] index = new byte[blockCount * DeltaClassHashSetWriter.INDEX_ENTRY_SIZE];
+		deltaFile.seek(indexStart);
+		deltaFile.readFully(index);
+		ByteBuffer buffer = ByteBuffer.wrap(index);
+		blockOffset = new long[blockCount];
+		blockStoredLength = new int[blockCount];
+		blockLength = new int[blockCount];
+		blockSetCount = new int[blockCount];
+		for (int i=0; i<blockCount; ++i) {
+			blockOffset[i] = buffer.getLong();
+			blockStoredLength[i] = buffer.getInt();
+			blockLength[i] = buffer.getInt();
+			blockSetCount[i] = buffer.getInt();
+		}
+		nextBlock = 0;
+		loaded = new ArrayList<>();
+	}
+
+	/**
+	 * @return the next set, or null at the end of the file.
+	 */
+	public ClassHashSet next() throws IOException {
+		if (gzipStream != null) {
+			return ClassHashSet.readFromStream(gzipStream);
+		}
+		while (currentBlock == null || nextSet == currentBlock.sets.length) {
+			if (nextBlock == blockOffset.length) return null;
+			currentBlock = Block.decode(readBlock(nextBlock), blockLength[nextBlock], blockSetCount[nextBlock]);
+			nextBlock++;
+			nextSet = 0;
+		}
+		ClassHashSet set = currentBlock.get(nextSet++, loaded);
+		loaded.add(set);
+		return set;
+	}
+
+	/**
+	 * Load all the sets in a file.
+	 * Blocks of a delta-encoded file are decompressed and decoded in parallel.
+	 * @param numThreads specifies the number of threads.
+	 * Zero means the default of Concurrent.
+	 */
+	public static ArrayList<ClassHashSet> readAll(File file, int numThreads) throws IOException {
+		ClassHashSetReader reader = new ClassHashSetReader(file);
+		ArrayList<ClassHashSet> dataset = new ArrayList<>();
+		try {
+			if (reader.gzipStream != null) {
+				for (ClassHashSet set = reader.next(); set != null; set = reader.next()) {
+					dataset.add(set);
+				}
+				return dataset;
+			}
+
+			final Block[] blocks = new Block[reader.blockOffset.length];
+			final IOException[] error = new IOException[1];
+			Concurrent concurrent = new Concurrent(numThreads);
+			for (int i=0; i<blocks.length; ++i) {
+				final int index = i;
+				final byte[] stored = reader.readBlock(i);
+				final int length = reader.blockLength[i];
+				final int setCount = reader.blockSetCount[i];
+				concurrent.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							blocks[index] = Block.decode(stored, length, setCount);
+						} catch (IOException e) {
+							synchronized (error) {
+								error[0] = e;
+							}
+						}
+					}
+				});
+			}
+			concurrent.waitComplete();
+			if (error[0] != null) throw error[0];
+
+			for (Block b: blocks) {
+				for (int i=0; i<b.sets.length; ++i) {
+					dataset.add(b.get(i, dataset));
+				}
+			}
+			return dataset;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * @return the original content of a block.
+	 */
+	static byte[] expand(byte[] stored, int length) throws IOException {
+		if (stored.length == length) return stored;
+		byte[] content = new byte[length];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(stored);
+			if (inflater.inflate(content) != length || !inflater.finished()) {
+				throw new IOException("Broken block");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			inflater.end();
+		}
+		return content;
+	}
+
+	int getBlockCount() {
+		return blockOffset.length;
+	}
+
+	long getBlockOffset(int index) {
+		return blockOffset[index];
+	}
+
+	int getBlockStoredLength(int index) {
+		return blockStoredLength[index];
+	}
+
+	int getBlockLength(int index) {
+		return blockLength[index];
+	}
+
+	int getBlockSetCount(int index) {
+		return blockSetCount[index];
+	}
+
+	/**
+	 * @return the stored content of a block.
+	 */
+	byte[] readBlock(int index) throws IOException {
+		byte[] stored = new byte[blockStoredLength[index]];
+		deltaFile.seek(blockOffset[index]);
+		deltaFile.readFully(stored);
+		return stored;
+	}
+
+	public void close() throws IOException {
+		if (deltaFile != null) {
+			deltaFile.close();
+		} else {
+			gzipStream.close();
+		}
+	}
+
+
+	/**
+	 * Sets decoded from a block.
+	 * A set duplicating a previous set is represented by the index of the previous set.
+	 */
+	private static class Block {
+
+		private ClassHashSet[] sets;
+		private int[] references;
+
+		public static Block decode(byte[] stored, int length, int setCount) throws IOException {
+			byte[] content = expand(stored, length);
+			Block b = new Block();
+			b.sets = new ClassHashSet[setCount];
+			b.references = new int[setCount];
+			ByteBuffer buffer = ByteBuffer.wrap(content);
+			for (int i=0; i<setCount; ++i) {
+				int recordLength = buffer.getInt();
+				if (recordLength >= 0) {
+					b.sets[i] = ClassHashSet.decodeDelta(content, buffer.position(), recordLength);
+					b.references[i] = -1;
+					buffer.position(buffer.position() + recordLength);
+				} else {
+					b.references[i] = -recordLength - 1;
+				}
+			}
+			if (buffer.hasRemaining()) {
+				throw new IOException("Broken block");
+			}
+			return b;
+		}
+
+		/**
+		 * @param previous is the list of the sets preceding this block.
+		 */
+		public ClassHashSet get(int index, ArrayList<ClassHashSet> previous) {
+			if (sets[index] != null) {
+				return sets[index];
+			} else {
+				return previous.get(references[index]);
+			}
+		}
+	}
+
+}
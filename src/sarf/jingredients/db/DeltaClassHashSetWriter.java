@@ -0,0 +1,216 @@
+package sarf.jingredients.db;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.hash.ClassHashSet;
+import sarf.jingredients.util.Concurrent;
+
+/**
+ * A writer to create a signature file in the delta encoding.
+ * Sets are grouped into blocks that are independently compressed,
+ * so that blocks are compressed and decompressed in parallel.
+ * The file has the following layout (big endian):
+ * <pre>
+ * header:  int MAGIC, int VERSION
+ * blocks:  deflated (or stored if deflate does not reduce the size) records.
+ *          A record is int length followed by a set encoded by ClassHashSet.encodeDelta.
+ *          A negative length -(k+1) represents the same content as the k-th set in the file.
+ * index:   for each block, long offset, int stored length, int original length, int the number of sets
+ * footer:  long the start position of the index, int the number of blocks, int MAGIC
+ * </pre>
+ * A block is stored without compression if its stored length is the same as the original length.
+ */
+public class DeltaClassHashSetWriter {
+
+	public static final int MAGIC = 0x4a494456; // "JIDV"
+	public static final int VERSION = 2;
+	public static final int HEADER_SIZE = 8;
+	public static final int FOOTER_SIZE = 16;
+	public static final int INDEX_ENTRY_SIZE = 20;
+
+	/**
+	 * A block is closed when its records exceed this size.
+	 */
+	private static final int BLOCK_SIZE = 1 << 16;
+
+	private DataOutputStream out;
+	private long position;
+	private HashMap<ClassHash, Integer> written;
+	private int count;
+
+	private ByteArrayOutputStream block;
+	private DataOutputStream blockOut;
+	private int blockSetCount;
+
+	private Concurrent compressor;
+	private LinkedList<Future<byte[]>> pendingBlocks;
+	private TIntArrayList pendingLength;
+	private TIntArrayList pendingSetCount;
+
+	private TLongArrayList blockOffset;
+	private TIntArrayList blockStoredLength;
+	private TIntArrayList blockLength;
+	private TIntArrayList blockSetCounts;
+
+	/**
+	 * @param numThreads specifies the number of threads to compress blocks.
+	 */
+	public DeltaClassHashSetWriter(File file, int numThreads) throws IOException {
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		position = HEADER_SIZE;
+		written = new HashMap<>();
+		count = 0;
+		block = new ByteArrayOutputStream(BLOCK_SIZE * 2);
+		blockOut = new DataOutputStream(block);
+		blockSetCount = 0;
+		compressor = new Concurrent(numThreads);
+		pendingBlocks = new LinkedList<>();
+		pendingLength = new TIntArrayList();
+		pendingSetCount = new TIntArrayList();
+		blockOffset = new TLongArrayList();
+		blockStoredLength = new TIntArrayList();
+		blockLength = new TIntArrayList();
+		blockSetCounts = new TIntArrayList();
+	}
+
+	/**
+	 * Append a set to the file.
+	 * @param list must be sorted (e.g. a result of Component.createHashList).
+	 */
+	public void add(ArrayList<ClassHash> list) throws IOException {
+		byte[] encoded = new ClassHashSet(list).encodeDelta();
+		ClassHash h = new ClassHash(digest(encoded));
+		Integer previous = written.get(h);
+		if (previous != null) {
+			blockOut.writeInt(-(previous + 1));
+		} else {
+			written.put(h, count);
+			blockOut.writeInt(encoded.length);
+			blockOut.write(encoded);
+		}
+		count++;
+		blockSetCount++;
+		if (block.size() >= BLOCK_SIZE) {
+			closeBlock();
+			writeBlocks(false);
+		}
+	}
+
+	private static byte[] digest(byte[] content) {
+		try {
+			return MessageDigest.getInstance("SHA-1").digest(content);
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Pass the current block to a compression thread.
+	 */
+	private void closeBlock() {
+		if (blockSetCount == 0) return;
+		final byte[] content = block.toByteArray();
+		pendingBlocks.add(compressor.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() {
+				return compress(content);
+			}
+		}));
+		pendingLength.add(content.length);
+		pendingSetCount.add(blockSetCount);
+		block.reset();
+		blockSetCount = 0;
+	}
+
+	/**
+	 * @return deflated content, or the content itself if deflate does not reduce the size.
+	 */
+	private static byte[] compress(byte[] content) {
+		Deflater deflater = new Deflater();
+		deflater.setInput(content);
+		deflater.finish();
+		byte[] buf = new byte[content.length];
+		int length = 0;
+		while (!deflater.finished() && length < buf.length) {
+			length += deflater.deflate(buf, length, buf.length - length);
+		}
+		boolean reduced = deflater.finished() && length < content.length;
+		deflater.end();
+		if (reduced) {
+			byte[] result = new byte[length];
+			System.arraycopy(buf, 0, result, 0, length);
+			return result;
+		} else {
+			return content;
+		}
+	}
+
+	/**
+	 * Write compressed blocks to the file in the original order.
+	 * @param waitAll specifies whether the method waits for all the pending blocks.
+	 */
+	private void writeBlocks(boolean waitAll) throws IOException {
+		while (!pendingBlocks.isEmpty() && (waitAll || pendingBlocks.getFirst().isDone())) {
+			byte[] stored;
+			try {
+				stored = pendingBlocks.removeFirst().get();
+			} catch (InterruptedException | ExecutionException e) {
+				throw new IOException(e);
+			}
+			blockOffset.add(position);
+			blockStoredLength.add(stored.length);
+			blockLength.add(pendingLength.removeAt(0));
+			blockSetCounts.add(pendingSetCount.removeAt(0));
+			out.write(stored);
+			position += stored.length;
+		}
+	}
+
+	/**
+	 * @return the number of sets written to the file.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Write the remaining blocks and the block index, and close the file.
+	 */
+	public void close() throws IOException {
+		closeBlock();
+		writeBlocks(true);
+		compressor.waitComplete();
+		long indexStart = position;
+		for (int i=0; i<blockOffset.size(); ++i) {
+			out.writeLong(blockOffset.get(i));
+			out.writeInt(blockStoredLength.get(i));
+			out.writeInt(blockLength.get(i));
+			out.writeInt(blockSetCounts.get(i));
+		}
+		out.writeLong(indexStart);
+		out.writeInt(blockOffset.size());
+		out.writeInt(MAGIC);
+		out.close();
+	}
+
+}
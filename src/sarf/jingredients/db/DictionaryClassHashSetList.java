@@ -0,0 +1,388 @@
+package sarf.jingredients.db;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.hash.ClassHashSet;
+
+/**
+ * ClassHashSetList representing each set as a sorted array of IDs
+ * assigned by a ClassHashDictionary.
+ * A hash value shared by many jar files is stored only once in the dictionary,
+ * and a set costs only 4 bytes per element in the heap.
+ * A query translates a target into IDs once,
+ * and then compares the target with sets using only integer arrays.
+ * If multiple dictionaries are loaded together, they are merged into a global ID space,
+ * so that IDs of all the sets are comparable.
+ * An ID file has the following layout (big endian):
+ * <pre>
+ * header:  int MAGIC, int VERSION, int the number of sets
+ * sets:    for each set, int the number of elements followed by sorted IDs.
+ *          An ID appears N times if the set includes N instances of the hash value.
+ * </pre>
+ */
+public class DictionaryClassHashSetList implements ClassHashSetList {
+
+	public static final int MAGIC = 0x4a494944; // "JIID"
+	public static final int VERSION = 1;
+
+	/**
+	 * Galloping search is used if an array is this times larger than another.
+	 */
+	private static final int GALLOP_RATIO = 16;
+
+	private ArrayList<Part> parts;
+	private int size;
+
+	/**
+	 * The dictionary and the local ID of each global ID.
+	 * They are null if a single dictionary is loaded; its IDs are used as global IDs.
+	 */
+	private int[] globalPart;
+	private int[] globalLocalId;
+
+	/**
+	 * Load ID files with their dictionaries.
+	 * Sets in the files are concatenated in the given order.
+	 */
+	public DictionaryClassHashSetList(File[] dictionaryFiles, File[] idFiles) throws IOException {
+		assert dictionaryFiles.length == idFiles.length;
+		parts = new ArrayList<>(idFiles.length);
+		size = 0;
+		for (int i=0; i<idFiles.length; ++i) {
+			Part p = new Part(new ClassHashDictionary(dictionaryFiles[i]), idFiles[i], size);
+			parts.add(p);
+			size += p.sets.length;
+		}
+		if (parts.size() > 1) {
+			mergeDictionaries();
+		}
+	}
+
+	/**
+	 * Assign global IDs in the order of hash values by merging the sorted dictionaries,
+	 * and translate the sets into the global IDs.
+	 * The translation keeps the IDs of each set sorted.
+	 */
+	private void mergeDictionaries() {
+		final int[] next = new int[parts.size()];
+		int[][] toGlobal = new int[parts.size()][];
+		PriorityQueue<Integer> queue = new PriorityQueue<>(parts.size(), new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return parts.get(o1).dictionary.compare(next[o1], parts.get(o2).dictionary, next[o2]);
+			}
+		});
+		for (int k=0; k<parts.size(); ++k) {
+			toGlobal[k] = new int[parts.get(k).dictionary.size()];
+			if (toGlobal[k].length > 0) queue.add(k);
+		}
+		TIntArrayList owners = new TIntArrayList();
+		TIntArrayList localIds = new TIntArrayList();
+		while (!queue.isEmpty()) {
+			int first = queue.poll();
+			int globalId = owners.size();
+			owners.add(first);
+			localIds.add(next[first]);
+			ClassHashDictionary dictionary = parts.get(first).dictionary;
+			int firstId = next[first];
+			// The same hash value in the other dictionaries is at the head of the queue 
+			while (!queue.isEmpty() && parts.get(queue.peek()).dictionary.compare(next[queue.peek()], dictionary, firstId) == 0) {
+				int k = queue.poll();
+				toGlobal[k][next[k]] = globalId;
+				if (++next[k] < toGlobal[k].length) queue.add(k);
+			}
+			toGlobal[first][next[first]] = globalId;
+			if (++next[first] < toGlobal[first].length) queue.add(first);
+		}
+		globalPart = owners.toArray();
+		globalLocalId = localIds.toArray();
+		for (int k=0; k<parts.size(); ++k) {
+			for (int[] set: parts.get(k).sets) {
+				for (int i=0; i<set.length; ++i) {
+					set[i] = toGlobal[k][set[i]];
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the global ID of a hash value, or -1 if the hash value is not in the dictionaries.
+	 */
+	private int getId(ClassHash h) {
+		if (globalPart == null) {
+			return parts.get(0).dictionary.getId(h);
+		}
+		int low = 0;
+		int high = globalPart.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int c = parts.get(globalPart[mid]).dictionary.compare(h, globalLocalId[mid]);
+			if (c > 0) {
+				low = mid + 1;
+			} else if (c < 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the hash value of a global ID.
+	 */
+	private ClassHash getHash(int id) {
+		if (globalPart == null) {
+			return parts.get(0).dictionary.getHash(id);
+		}
+		return parts.get(globalPart[id]).dictionary.getHash(globalLocalId[id]);
+	}
+
+	/**
+	 * Create a dictionary file and an ID file for a given list of sets.
+	 */
+	public static void write(ClassHashSetList dataset, File dictionaryFile, File idFile) throws IOException {
+		ClassHashDictionary.write(dataset, dictionaryFile);
+		ClassHashDictionary dictionary = new ClassHashDictionary(dictionaryFile);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(idFile), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(dataset.size());
+		for (int i=0; i<dataset.size(); ++i) {
+			ClassHashSet set = dataset.get(i);
+			out.writeInt(set.size());
+			for (ClassHash h: set) {
+				int id = dictionary.getId(h);
+				assert id >= 0;
+				for (int k=set.count(h); k>0; --k) {
+					out.writeInt(id);
+				}
+			}
+		}
+		out.close();
+	}
+
+	private Part getPart(int index) {
+		for (Part p: parts) {
+			if (index < p.base + p.sets.length) return p;
+		}
+		throw new IndexOutOfBoundsException(Integer.toString(index));
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int getSetSize(int index) {
+		Part p = getPart(index);
+		return p.sets[index - p.base].length;
+	}
+
+	@Override
+	public ClassHashSet get(int index) {
+		Part p = getPart(index);
+		int[] ids = p.sets[index - p.base];
+		ArrayList<ClassHash> list = new ArrayList<>(ids.length);
+		for (int id: ids) {
+			list.add(getHash(id));
+		}
+		return new ClassHashSet(list);
+	}
+
+	@Override
+	public Query prepare(ClassHashSet target) {
+		return new IdQuery(target);
+	}
+
+
+	private static class Part {
+
+		private ClassHashDictionary dictionary;
+		private int[][] sets;
+		private int base;
+
+		public Part(ClassHashDictionary dictionary, File idFile, int base) throws IOException {
+			this.dictionary = dictionary;
+			this.base = base;
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(idFile), 1 << 16));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+					throw new IOException("Unsupported ID file: " + idFile.getAbsolutePath());
+				}
+				sets = new int[in.readInt()][];
+				for (int i=0; i<sets.length; ++i) {
+					int[] ids = new int[in.readInt()];
+					for (int k=0; k<ids.length; ++k) {
+						ids[k] = in.readInt();
+					}
+					sets[i] = ids;
+				}
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+
+	/**
+	 * A target translated into global IDs.
+	 */
+	private class IdQuery implements Query {
+
+		private ClassHashSet target;
+		private int[] ids;
+		private int[] positions;
+		private int[] counts;
+		private int length;
+
+		public IdQuery(ClassHashSet target) {
+			this.target = target;
+			int n = target.distinctSize();
+			ids = new int[n];
+			positions = new int[n];
+			counts = new int[n];
+			// Global IDs are in the order of hash values, the same as the iteration order of the target
+			int position = 0;
+			for (ClassHash h: target) {
+				int id = getId(h);
+				if (id >= 0) {
+					ids[length] = id;
+					positions[length] = position;
+					counts[length] = target.count(h);
+					length++;
+				}
+				position++;
+			}
+		}
+
+		@Override
+		public double overlap(int index) {
+			int setSize = getSetSize(index);
+			if (setSize > 0) {
+				return intersect(index, null, null, setSize) * 1.0 / setSize;
+			} else {
+				return 0;
+			}
+		}
+
+		@Override
+		public double overlap(int index, double threshold) {
+			int setSize = getSetSize(index);
+			if (setSize > 0) {
+				int intersection = intersect(index, null, null, ClassHashSet.getMaxUnmatch(setSize, threshold));
+				return (intersection >= 0) ? intersection * 1.0 / setSize : 0;
+			} else {
+				return 0;
+			}
+		}
+
+		@Override
+		public ClassHashSet getIntersectionSet(int index) {
+			Part p = getPart(index);
+			int n = Math.min(length, p.sets[index - p.base].length);
+			int[] selectedPositions = new int[n];
+			int[] selectedCounts = new int[n];
+			int selected = intersect(index, selectedPositions, selectedCounts, p.sets[index - p.base].length);
+			return target.subset(selectedPositions, selectedCounts, selected);
+		}
+
+		/**
+		 * Compare the target with the index-th set.
+		 * @param selectedPositions receives the positions of the common hash values in the target if it is not null.
+		 * @param selectedCounts receives the numbers of common instances if selectedPositions is not null.
+		 * @param maxUnmatch specifies the number of elements of the set missing in the target
+		 * that terminates the comparison.
+		 * @return the number of the common hash values if selectedPositions is not null.
+		 * Otherwise, the size of the intersection.
+		 * A negative value is returned if the comparison is terminated.
+		 */
+		private int intersect(int index, int[] selectedPositions, int[] selectedCounts, int maxUnmatch) {
+			Part p = getPart(index);
+			int[] set = p.sets[index - p.base];
+			int[] targetIds = ids;
+			int[] targetCounts = counts;
+			int[] targetPositions = positions;
+			int targetLength = length;
+
+			int selected = 0;
+			int total = 0;
+			int unmatch = 0;
+			int i = 0;
+			int j = 0;
+			boolean gallopSet = set.length > targetLength * GALLOP_RATIO;
+			boolean gallopTarget = targetLength > set.length * GALLOP_RATIO;
+			while (i < set.length && j < targetLength) {
+				int id = set[i];
+				int t = targetIds[j];
+				if (id == t) {
+					int runLength = 1;
+					while (i + runLength < set.length && set[i + runLength] == id) {
+						runLength++;
+					}
+					int c = Math.min(runLength, targetCounts[j]);
+					if (selectedPositions != null) {
+						selectedPositions[selected] = targetPositions[j];
+						selectedCounts[selected] = c;
+					}
+					selected++;
+					total += c;
+					unmatch += runLength - c;
+					i += runLength;
+					j++;
+				} else if (id < t) {
+					int next = gallopSet ? gallop(set, i + 1, set.length, t) : i + 1;
+					unmatch += next - i;
+					i = next;
+				} else {
+					j = gallopTarget ? gallop(targetIds, j + 1, targetLength, id) : j + 1;
+				}
+				if (unmatch > maxUnmatch) {
+					// terminate because there is no chance to reach the threshold
+					return -1;
+				}
+			}
+			if (set.length - total > maxUnmatch) return -1;
+			return (selectedPositions != null) ? selected : total;
+		}
+	}
+
+	/**
+	 * @return the first position in [from, to) whose value is the same as or larger than a given value.
+	 */
+	private static int gallop(int[] array, int from, int to, int value) {
+		int step = 1;
+		int low = from;
+		int high = from;
+		while (high < to && array[high] < value) {
+			low = high + 1;
+			high = from + step;
+			step <<= 1;
+		}
+		if (high > to) high = to;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (array[mid] < value) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+}
@@ -0,0 +1,136 @@
+package sarf.jingredients.db;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.hash.ClassHashSet;
+
+/**
+ * The number of jar files including each hash value (document frequency).
+ * Only hash values included in many jar files are recorded,
+ * since the frequency is used to exclude ubiquitous classes from an analysis.
+ * The file has the following layout (big endian):
+ * <pre>
+ * header:   int MAGIC, int VERSION, int the number of jar files, int the minimum recorded frequency, int the number of entries
+ * entries:  a hash value and its frequency (int) in the descending order of the frequency
+ * </pre>
+ */
+public class DocumentFrequency {
+
+	public static final int MAGIC = 0x4a494446; // "JIDF"
+	public static final int VERSION = 1;
+
+	/**
+	 * A hash value is recorded if it is included in this ratio of jar files (and at least two jar files).
+	 */
+	public static final double MIN_RECORDED_RATIO = 0.001;
+
+	private int jarCount;
+	private TObjectIntHashMap<ClassHash> frequency = new TObjectIntHashMap<>();
+
+	/**
+	 * Load frequency files.
+	 * Frequencies in multiple files are summed up.
+	 * The sum is a lower bound if a hash value is not recorded in some files.
+	 */
+	public DocumentFrequency(File[] files) throws IOException {
+		for (File f: files) {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+					throw new IOException("Unsupported frequency file: " + f.getAbsolutePath());
+				}
+				jarCount += in.readInt();
+				in.readInt(); // the minimum recorded frequency
+				int entries = in.readInt();
+				for (int i=0; i<entries; ++i) {
+					byte[] buf = new byte[ClassHash.SHA1LENGTH];
+					in.readFully(buf);
+					int count = in.readInt();
+					frequency.adjustOrPutValue(new ClassHash(buf), count, count);
+				}
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of jar files covered by the files.
+	 */
+	public int getJarCount() {
+		return jarCount;
+	}
+
+	/**
+	 * @return the number of jar files including a hash value.
+	 * Zero is returned for a hash value that is not frequent enough to be recorded.
+	 */
+	public int getFrequency(ClassHash h) {
+		return frequency.get(h);
+	}
+
+	/**
+	 * @return hash values included in more than the ratio of jar files.
+	 */
+	public ClassHashSet getFrequentHashes(double ratio) {
+		ArrayList<ClassHash> list = new ArrayList<>();
+		for (ClassHash h: frequency.keySet()) {
+			if (frequency.get(h) > ratio * jarCount) {
+				list.add(h);
+			}
+		}
+		return new ClassHashSet(list);
+	}
+
+	/**
+	 * Create a frequency file for a given list of sets.
+	 */
+	public static void write(ClassHashSetList dataset, File file) throws IOException {
+		final TObjectIntHashMap<ClassHash> counts = new TObjectIntHashMap<>();
+		for (int jar=0; jar<dataset.size(); ++jar) {
+			for (ClassHash h: dataset.get(jar)) {
+				counts.adjustOrPutValue(h, 1, 1);
+			}
+		}
+		int minFrequency = Math.max(2, (int)Math.ceil(dataset.size() * MIN_RECORDED_RATIO));
+		ArrayList<ClassHash> keys = new ArrayList<>();
+		for (ClassHash h: counts.keySet()) {
+			if (counts.get(h) >= minFrequency) {
+				keys.add(h);
+			}
+		}
+		Collections.sort(keys, new Comparator<ClassHash>() {
+			@Override
+			public int compare(ClassHash o1, ClassHash o2) {
+				int c = Integer.compare(counts.get(o2), counts.get(o1));
+				return (c != 0) ? c : o1.compareTo(o2);
+			}
+		});
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(dataset.size());
+		out.writeInt(minFrequency);
+		out.writeInt(keys.size());
+		for (ClassHash h: keys) {
+			h.writeTo(out);
+			out.writeInt(counts.get(h));
+		}
+		out.close();
+	}
+
+}
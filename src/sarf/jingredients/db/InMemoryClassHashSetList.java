@@ -0,0 +1,66 @@
+package sarf.jingredients.db;
+
+import java.util.ArrayList;
+
+import sarf.jingredients.hash.ClassHashSet;
+
+/**
+ * ClassHashSetList keeping all the sets in the heap.
+ */
+public class InMemoryClassHashSetList implements ClassHashSetList {
+
+	private ArrayList<ClassHashSet> sets;
+
+	public InMemoryClassHashSetList() {
+		this.sets = new ArrayList<>();
+	}
+
+	public void addAll(ArrayList<ClassHashSet> list) {
+		sets.addAll(list);
+	}
+
+	/**
+	 * Make the index-th set refer to the same instance as another set.
+	 * This is used to release a duplicated set.
+	 */
+	public void share(int index, int another) {
+		assert sets.get(index).equals(sets.get(another));
+		sets.set(index, sets.get(another));
+	}
+
+	@Override
+	public int size() {
+		return sets.size();
+	}
+
+	@Override
+	public int getSetSize(int index) {
+		return sets.get(index).size();
+	}
+
+	@Override
+	public ClassHashSet get(int index) {
+		return sets.get(index);
+	}
+
+	@Override
+	public Query prepare(final ClassHashSet target) {
+		return new Query() {
+			@Override
+			public double overlap(int index) {
+				return target.overlap(sets.get(index));
+			}
+
+			@Override
+			public double overlap(int index, double threshold) {
+				return target.overlap(sets.get(index), threshold);
+			}
+
+			@Override
+			public ClassHashSet getIntersectionSet(int index) {
+				return target.getIntersectionSet(sets.get(index));
+			}
+		};
+	}
+
+}
@@ -0,0 +1,216 @@
+package sarf.jingredients.db;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntIntHashMap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.hash.ClassHashSet;
+
+/**
+ * A persistent index from a hash value to a list of jar files (posting list).
+ * A jar file is identified by its position in a ClassHashSetList.
+ * The file has the following layout (big endian):
+ * <pre>
+ * header:    int MAGIC, int VERSION, int hash length, int the number of jar files, int the number of keys, int reserved
+ * keys:      sorted distinct hash values
+ * offsets:   int[keys+1]; postings of the i-th key are stored in [offsets[i], offsets[i+1])
+ * postings:  sorted jar IDs.  A jar ID appears N times if the jar includes N instances of the key.
+ * </pre>
+ */
+public class InvertedIndex {
+
+	public static final int MAGIC = 0x4a494949; // "JIII"
+	public static final int VERSION = 1;
+	private static final int HEADER_SIZE = 24;
+
+	private ArrayList<Part> parts;
+	private int jarCount;
+
+	/**
+	 * Open index files.
+	 * Jar IDs in the i-th file are shifted by the number of jar files in the preceding files,
+	 * in the same way as Database concatenates multiple databases.
+	 */
+	public InvertedIndex(File[] files) throws IOException {
+		parts = new ArrayList<>(files.length);
+		jarCount = 0;
+		for (File f: files) {
+			Part p = new Part(f, jarCount);
+			parts.add(p);
+			jarCount += p.jarCount;
+		}
+	}
+
+	/**
+	 * @return the number of jar files covered by the index.
+	 */
+	public int getJarCount() {
+		return jarCount;
+	}
+
+	/**
+	 * @return true if at least one jar file includes the hash value.
+	 */
+	public boolean contains(ClassHash h) {
+		for (Part p: parts) {
+			if (p.find(h) >= 0) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Compute the size of the intersection between a target
+	 * and each jar file sharing at least one hash value with the target.
+	 * @return a map from a jar ID to the size of the intersection.
+	 * Jar files that share no hash values are not included in the map.
+	 */
+	public TIntIntHashMap countIntersections(ClassHashSet target) {
+		TIntIntHashMap counts = new TIntIntHashMap();
+		for (ClassHash h: target) {
+			int targetCount = target.count(h);
+			for (Part p: parts) {
+				p.countIntersections(h, targetCount, counts);
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Create an index file for a given list of sets.
+	 */
+	public static void write(ClassHashSetList dataset, File file) throws IOException {
+		HashMap<ClassHash, TIntArrayList> postings = new HashMap<>();
+		long postingCount = 0;
+		for (int jar=0; jar<dataset.size(); ++jar) {
+			ClassHashSet set = dataset.get(jar);
+			for (ClassHash h: set) {
+				TIntArrayList list = postings.get(h);
+				if (list == null) {
+					list = new TIntArrayList(4);
+					postings.put(h, list);
+				}
+				int count = set.count(h);
+				for (int i=0; i<count; ++i) {
+					list.add(jar);
+				}
+				postingCount += count;
+			}
+		}
+		if (postingCount > Integer.MAX_VALUE) {
+			throw new IOException("Too many entries for an index file; the database should be split.");
+		}
+		ArrayList<ClassHash> keys = new ArrayList<>(postings.keySet());
+		Collections.sort(keys);
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(ClassHash.SHA1LENGTH);
+		out.writeInt(dataset.size());
+		out.writeInt(keys.size());
+		out.writeInt(0);
+		for (ClassHash h: keys) {
+			h.writeTo(out);
+		}
+		int offset = 0;
+		out.writeInt(offset);
+		for (ClassHash h: keys) {
+			offset += postings.get(h).size();
+			out.writeInt(offset);
+		}
+		for (ClassHash h: keys) {
+			TIntArrayList list = postings.get(h);
+			for (int i=0; i<list.size(); ++i) {
+				out.writeInt(list.get(i));
+			}
+		}
+		out.close();
+	}
+
+
+	/**
+	 * An index file.
+	 */
+	private static class Part {
+
+		private int jarBase;
+		private int jarCount;
+		private int keyCount;
+		private ByteBuffer keys;
+		private IntBuffer offsets;
+		private IntBuffer postings;
+
+		public Part(File file, int jarBase) throws IOException {
+			this.jarBase = jarBase;
+			try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+				FileChannel channel = raf.getChannel();
+				ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+				if (header.getInt(0) != MAGIC || header.getInt(8) != ClassHash.SHA1LENGTH) {
+					throw new IOException("Unsupported index file: " + file.getAbsolutePath());
+				}
+				jarCount = header.getInt(12);
+				keyCount = header.getInt(16);
+				long keysSize = (long)keyCount * ClassHash.SHA1LENGTH;
+				long offsetsSize = (keyCount + 1L) * 4;
+				if (keysSize > Integer.MAX_VALUE) {
+					throw new IOException("Too many keys in an index file: " + file.getAbsolutePath());
+				}
+				keys = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, keysSize);
+				offsets = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + keysSize, offsetsSize).asIntBuffer();
+				long postingsSize = offsets.get(keyCount) * 4L;
+				postings = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + keysSize + offsetsSize, postingsSize).asIntBuffer();
+			}
+		}
+
+		/**
+		 * @return the position of a key, or -1 if the key is not included in the index.
+		 */
+		private int find(ClassHash h) {
+			int low = 0;
+			int high = keyCount - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int c = h.compareTo(keys, mid * ClassHash.SHA1LENGTH);
+				if (c > 0) {
+					low = mid + 1;
+				} else if (c < 0) {
+					high = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			return -1;
+		}
+
+		public void countIntersections(ClassHash h, int targetCount, TIntIntHashMap counts) {
+			int k = find(h);
+			if (k < 0) return;
+			int end = offsets.get(k+1);
+			int pos = offsets.get(k);
+			while (pos < end) {
+				// Postings are sorted; the same jar IDs are consecutive.
+				int jar = postings.get(pos);
+				int runLength = 1;
+				while (pos + runLength < end && postings.get(pos + runLength) == jar) {
+					runLength++;
+				}
+				counts.adjustOrPutValue(jarBase + jar, Math.min(targetCount, runLength), Math.min(targetCount, runLength));
+				pos += runLength;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,263 @@
+package sarf.jingredients.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.hash.ClassHashSet;
+
+/**
+ * ClassHashSetList decoding a set from delta-encoded files only when the set is requested.
+ * Decoded sets are kept in a least-recently-used cache
+ * whose approximate size in the heap is bounded by a given budget.
+ * The list keeps only the location, the size and a digest of each set in the heap.
+ * The list can be used by multiple threads.
+ */
+public class LazyClassHashSetList implements ClassHashSetList {
+
+	private ArrayList<Part> parts;
+
+	private int[] setSize;
+	private int[] canonical;
+	private int[] part;
+	private int[] block;
+	private int[] recordOffset;
+	private int[] recordLength;
+	private ClassHash[] digests;
+
+	private long cacheBudget;
+	private long cacheUsage;
+	private LinkedHashMap<Integer, ClassHashSet> cache;
+
+	/**
+	 * Scan files created by DeltaClassHashSetWriter.
+	 * Sets in the files are concatenated in the given order.
+	 * @param cacheBudget specifies the maximum number of bytes used by the decoded sets in the cache.
+	 */
+	public LazyClassHashSetList(File[] files, long cacheBudget) throws IOException {
+		this.cacheBudget = cacheBudget;
+		this.cache = new LinkedHashMap<>(16, 0.75f, true);
+
+		int total = 0;
+		parts = new ArrayList<>(files.length);
+		for (int i=0; i<files.length; ++i) {
+			Part p = new Part(files[i], total);
+			parts.add(p);
+			total += p.setCount;
+		}
+		setSize = new int[total];
+		canonical = new int[total];
+		part = new int[total];
+		block = new int[total];
+		recordOffset = new int[total];
+		recordLength = new int[total];
+		digests = new ClassHash[total];
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			for (int i=0; i<parts.size(); ++i) {
+				scan(i, digest);
+			}
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Record the locations of the sets in a file.
+	 * A set duplicating a previous set refers to the location of the previous set.
+	 */
+	private void scan(int partIndex, MessageDigest digest) throws IOException {
+		Part p = parts.get(partIndex);
+		int index = p.base;
+		for (int b=0; b<p.blockOffset.length; ++b) {
+			byte[] content = ClassHashSetReader.expand(p.read(p.blockOffset[b], p.blockStoredLength[b]), p.blockLength[b]);
+			ByteBuffer buffer = ByteBuffer.wrap(content);
+			for (int k=0; k<p.blockSetCount[b]; ++k) {
+				int length = buffer.getInt();
+				if (length >= 0) {
+					int offset = buffer.position();
+					setSize[index] = ClassHashSet.getDeltaEncodedSize(content, offset, length);
+					canonical[index] = index;
+					part[index] = partIndex;
+					block[index] = b;
+					recordOffset[index] = offset;
+					recordLength[index] = length;
+					digest.update(content, offset, length);
+					digests[index] = new ClassHash(digest.digest());
+					buffer.position(offset + length);
+				} else {
+					int previous = canonical[p.base - length - 1];
+					setSize[index] = setSize[previous];
+					canonical[index] = previous;
+					digests[index] = digests[previous];
+				}
+				index++;
+			}
+			if (buffer.hasRemaining()) {
+				throw new IOException("Broken block");
+			}
+		}
+		if (index != p.base + p.setCount) {
+			throw new IOException("Broken database file");
+		}
+	}
+
+	/**
+	 * Make the index-th set refer to the same location as another set.
+	 * This is used to share a cache entry between duplicated sets.
+	 */
+	public synchronized void share(int index, int another) {
+		assert digests[index].equals(digests[another]);
+		canonical[index] = canonical[another];
+	}
+
+	/**
+	 * @return a SHA-1 hash of the encoded content of the index-th set.
+	 * Sets having the same content have the same hash.
+	 */
+	public ClassHash getDigest(int index) {
+		return digests[index];
+	}
+
+	@Override
+	public int size() {
+		return setSize.length;
+	}
+
+	@Override
+	public int getSetSize(int index) {
+		return setSize[index];
+	}
+
+	/**
+	 * @return the index-th set.
+	 * The set is decoded from the file if it is not in the cache.
+	 * @throws RuntimeException if the file cannot be read.
+	 */
+	@Override
+	public ClassHashSet get(int index) {
+		int c;
+		synchronized (this) {
+			c = canonical[index];
+			ClassHashSet set = cache.get(c);
+			if (set != null) return set;
+		}
+		ClassHashSet set;
+		try {
+			set = decode(c);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		synchronized (this) {
+			ClassHashSet another = cache.get(c);
+			if (another != null) return another;
+			cache.put(c, set);
+			cacheUsage += set.getMemoryUsage();
+			Iterator<Map.Entry<Integer, ClassHashSet>> it = cache.entrySet().iterator();
+			while (cacheUsage > cacheBudget && it.hasNext()) {
+				cacheUsage -= it.next().getValue().getMemoryUsage();
+				it.remove();
+			}
+		}
+		return set;
+	}
+
+	private ClassHashSet decode(int index) throws IOException {
+		Part p = parts.get(part[index]);
+		int b = block[index];
+		if (p.blockStoredLength[b] == p.blockLength[b]) {
+			// An uncompressed block allows to read only the record
+			byte[] record = p.read(p.blockOffset[b] + recordOffset[index], recordLength[index]);
+			return ClassHashSet.decodeDelta(record);
+		} else {
+			byte[] content = ClassHashSetReader.expand(p.read(p.blockOffset[b], p.blockStoredLength[b]), p.blockLength[b]);
+			return ClassHashSet.decodeDelta(content, recordOffset[index], recordLength[index]);
+		}
+	}
+
+	@Override
+	public Query prepare(final ClassHashSet target) {
+		return new Query() {
+			@Override
+			public double overlap(int index) {
+				return target.overlap(get(index));
+			}
+
+			@Override
+			public double overlap(int index, double threshold) {
+				return target.overlap(get(index), threshold);
+			}
+
+			@Override
+			public ClassHashSet getIntersectionSet(int index) {
+				return target.getIntersectionSet(get(index));
+			}
+		};
+	}
+
+
+	/**
+	 * A file and its block index.
+	 */
+	private static class Part {
+
+		private FileChannel channel;
+		private int base;
+		private int setCount;
+		private long[] blockOffset;
+		private int[] blockStoredLength;
+		private int[] blockLength;
+		private int[] blockSetCount;
+
+		public Part(File file, int base) throws IOException {
+			this.base = base;
+			if (!ClassHashSetReader.isDeltaFile(file)) {
+				throw new IOException("Not a delta-encoded file: " + file.getAbsolutePath());
+			}
+			ClassHashSetReader reader = new ClassHashSetReader(file);
+			try {
+				int blockCount = reader.getBlockCount();
+				blockOffset = new long[blockCount];
+				blockStoredLength = new int[blockCount];
+				blockLength = new int[blockCount];
+				blockSetCount = new int[blockCount];
+				for (int i=0; i<blockCount; ++i) {
+					blockOffset[i] = reader.getBlockOffset(i);
+					blockStoredLength[i] = reader.getBlockStoredLength(i);
+					blockLength[i] = reader.getBlockLength(i);
+					blockSetCount[i] = reader.getBlockSetCount(i);
+					setCount += blockSetCount[i];
+				}
+			} finally {
+				reader.close();
+			}
+			// The channel is kept open while the list is used
+			@SuppressWarnings("resource")
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			channel = raf.getChannel();
+		}
+
+		/**
+		 * Read bytes using a positional read so that threads can share the channel.
+		 */
+		public byte[] read(long position, int length) throws IOException {
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0) {
+					throw new IOException("Unexpected end of file");
+				}
+			}
+			return buffer.array();
+		}
+	}
+
+}
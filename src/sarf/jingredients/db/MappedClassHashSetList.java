@@ -0,0 +1,182 @@
+package sarf.jingredients.db;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.hash.ClassHashSet;
+
+/**
+ * ClassHashSetList reading sets from memory-mapped files
+ * created by MappedClassHashSetWriter.
+ * Hash values are not copied to the heap until get method is called,
+ * so that the operating system can share the file content
+ * among processes through its page cache.
+ * Files storing only fingerprints are read as fingerprint sets.
+ */
+public class MappedClassHashSetList implements ClassHashSetList {
+
+	/**
+	 * The maximum size of a mapped region.
+	 * A set is never split into two regions.
+	 */
+	private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+	private ArrayList<ByteBuffer> segments;
+	private TIntArrayList setSegment;
+	private TIntArrayList setPosition;
+	private TIntArrayList setSize;
+	private int hashLength;
+
+	/**
+	 * Open the specified files.
+	 * Sets in the files are concatenated in the given order.
+	 */
+	public MappedClassHashSetList(File[] files) throws IOException {
+		segments = new ArrayList<>();
+		setSegment = new TIntArrayList();
+		setPosition = new TIntArrayList();
+		setSize = new TIntArrayList();
+		hashLength = 0;
+		for (File f: files) {
+			open(f);
+		}
+	}
+
+	private void open(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			long fileSize = channel.size();
+			if (fileSize < MappedClassHashSetWriter.HEADER_SIZE + MappedClassHashSetWriter.FOOTER_SIZE) {
+				throw new IOException("Broken database file: " + file.getAbsolutePath());
+			}
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, MappedClassHashSetWriter.HEADER_SIZE);
+			ByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, fileSize - MappedClassHashSetWriter.FOOTER_SIZE, MappedClassHashSetWriter.FOOTER_SIZE);
+			int length = header.getInt(8);
+			if (header.getInt(0) != MappedClassHashSetWriter.MAGIC ||
+				footer.getInt(12) != MappedClassHashSetWriter.MAGIC ||
+				(length != ClassHash.SHA1LENGTH && length != ClassHash.FINGERPRINT_LENGTH) ||
+				(hashLength != 0 && length != hashLength)) {
+				throw new IOException("Unsupported database file: " + file.getAbsolutePath());
+			}
+			hashLength = length;
+			long tableStart = footer.getLong(0);
+			int count = footer.getInt(8);
+			LongBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, tableStart, (count + 1) * 8L).asLongBuffer();
+
+			// Split the data area into segments at set boundaries
+			int first = 0;
+			while (first < count) {
+				long segmentStart = toBytePosition(table.get(first));
+				int last = first + 1;
+				while (last < count && toBytePosition(table.get(last + 1)) - segmentStart <= MAX_SEGMENT_SIZE) {
+					last++;
+				}
+				long segmentEnd = toBytePosition(table.get(last));
+				MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentEnd - segmentStart);
+				int segmentIndex = segments.size();
+				segments.add(segment);
+				for (int i=first; i<last; ++i) {
+					setSegment.add(segmentIndex);
+					setPosition.add((int)(toBytePosition(table.get(i)) - segmentStart));
+					setSize.add((int)(table.get(i+1) - table.get(i)));
+				}
+				first = last;
+			}
+		}
+	}
+
+	private long toBytePosition(long elementIndex) {
+		return MappedClassHashSetWriter.HEADER_SIZE + elementIndex * hashLength;
+	}
+
+	@Override
+	public int size() {
+		return setSize.size();
+	}
+
+	@Override
+	public int getSetSize(int index) {
+		return setSize.get(index);
+	}
+
+	/**
+	 * Read the index-th set into the heap.
+	 */
+	@Override
+	public ClassHashSet get(int index) {
+		ByteBuffer segment = segments.get(setSegment.get(index));
+		return ClassHashSet.readFromBuffer(segment, setPosition.get(index), setSize.get(index), hashLength);
+	}
+
+	@Override
+	public Query prepare(final ClassHashSet target) {
+		return new Query() {
+			@Override
+			public double overlap(int index) {
+				return MappedClassHashSetList.this.overlap(target, index, 0);
+			}
+
+			@Override
+			public double overlap(int index, double threshold) {
+				return MappedClassHashSetList.this.overlap(target, index, threshold);
+			}
+
+			@Override
+			public ClassHashSet getIntersectionSet(int index) {
+				return target.getIntersectionSet(get(index));
+			}
+		};
+	}
+
+	/**
+	 * Compute the overlap coefficient without loading the set into the heap.
+	 * The comparison terminates if the overlap cannot reach a threshold.
+	 */
+	private double overlap(ClassHashSet target, int index, double threshold) {
+		int size = setSize.get(index);
+		if (size == 0) return 0;
+		if (hashLength != ClassHash.SHA1LENGTH) {
+			return target.overlap(get(index), threshold);
+		}
+		int maxUnmatch = ClassHashSet.getMaxUnmatch(size, threshold);
+
+		ByteBuffer segment = segments.get(setSegment.get(index));
+		int pos = setPosition.get(index);
+		int end = pos + size * ClassHash.SHA1LENGTH;
+		int intersection = 0;
+		int unmatch = 0;
+		while (pos < end) {
+			// A set is sorted; the same hash values are consecutive.
+			int runLength = 1;
+			while (pos + runLength * ClassHash.SHA1LENGTH < end && isSameHash(segment, pos, pos + runLength * ClassHash.SHA1LENGTH)) {
+				runLength++;
+			}
+			int count = target.count(segment, pos);
+			intersection += Math.min(count, runLength);
+			unmatch += runLength - Math.min(count, runLength);
+			if (unmatch > maxUnmatch) {
+				// terminate because there is no chance to reach the threshold
+				return 0;
+			}
+			pos += runLength * ClassHash.SHA1LENGTH;
+		}
+		return intersection * 1.0 / size;
+	}
+
+	private static boolean isSameHash(ByteBuffer segment, int pos1, int pos2) {
+		for (int i=0; i<ClassHash.SHA1LENGTH; ++i) {
+			if (segment.get(pos1 + i) != segment.get(pos2 + i)) return false;
+		}
+		return true;
+	}
+
+}
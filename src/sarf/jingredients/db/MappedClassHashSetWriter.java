@@ -0,0 +1,114 @@
+package sarf.jingredients.db;
+
+import gnu.trove.list.array.TLongArrayList;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.hash.ClassHashSet;
+
+/**
+ * A writer to create a file read by MappedClassHashSetList.
+ * The file has the following layout (big endian):
+ * <pre>
+ * header:  int MAGIC, int VERSION, int hash length, int reserved
+ * data:    sorted hash values of the first set, the second set, ...
+ * table:   long[count+1]; the i-th set is stored in elements [table[i], table[i+1])
+ * footer:  long the start position of the table, int count, int MAGIC
+ * </pre>
+ * Since the table is written at the end, sets can be written one by one
+ * without knowing the number of sets in advance.
+ * The hash length is ClassHash.FINGERPRINT_LENGTH for a file storing only fingerprints.
+ */
+public class MappedClassHashSetWriter {
+
+	public static final int MAGIC = 0x4a494d48; // "JIMH"
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 16;
+	public static final int FOOTER_SIZE = 16;
+
+	private DataOutputStream out;
+	private TLongArrayList offsets;
+	private long elementCount;
+	private int hashLength;
+
+	public MappedClassHashSetWriter(File file) throws IOException {
+		this(file, ClassHash.SHA1LENGTH);
+	}
+
+	/**
+	 * @param hashLength is either ClassHash.SHA1LENGTH or ClassHash.FINGERPRINT_LENGTH.
+	 */
+	public MappedClassHashSetWriter(File file, int hashLength) throws IOException {
+		assert hashLength == ClassHash.SHA1LENGTH || hashLength == ClassHash.FINGERPRINT_LENGTH;
+		this.hashLength = hashLength;
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(hashLength);
+		out.writeInt(0);
+		offsets = new TLongArrayList();
+		offsets.add(0);
+		elementCount = 0;
+	}
+
+	/**
+	 * Append a set to the file.
+	 * @param list must be sorted (e.g. a result of Component.createHashList).
+	 */
+	public void add(ArrayList<ClassHash> list) throws IOException {
+		for (ClassHash h: list) {
+			write(h);
+		}
+		elementCount += list.size();
+		offsets.add(elementCount);
+	}
+
+	/**
+	 * Append a set to the file.
+	 */
+	public void add(ClassHashSet set) throws IOException {
+		for (ClassHash h: set) {
+			for (int k=set.count(h); k>0; --k) {
+				write(h);
+			}
+		}
+		elementCount += set.size();
+		offsets.add(elementCount);
+	}
+
+	private void write(ClassHash h) throws IOException {
+		if (hashLength == ClassHash.SHA1LENGTH) {
+			h.writeTo(out);
+		} else {
+			h.writeFingerprintTo(out);
+		}
+	}
+
+	/**
+	 * @return the number of sets written to the file.
+	 */
+	public int size() {
+		return offsets.size() - 1;
+	}
+
+	/**
+	 * Write the offset table and close the file.
+	 */
+	public void close() throws IOException {
+		long tableStart = HEADER_SIZE + elementCount * hashLength;
+		for (int i=0; i<offsets.size(); ++i) {
+			out.writeLong(offsets.get(i));
+		}
+		out.writeLong(tableStart);
+		out.writeInt(size());
+		out.writeInt(MAGIC);
+		out.close();
+	}
+
+}
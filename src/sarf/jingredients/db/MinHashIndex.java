@@ -0,0 +1,296 @@
+package sarf.jingredients.db;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.hash.ClassHashSet;
+
+/**
+ * MinHash signatures of jar files and their LSH (locality-sensitive hashing) bands.
+ * A signature approximates the Jaccard index between multisets;
+ * each instance of a hash value is regarded as a distinct element.
+ * A signature is split into bands, and jar files having the same values in a band
+ * are found by a binary search on the band.
+ * The file has the following layout (big endian):
+ * <pre>
+ * header:     int MAGIC, int VERSION, int the number of hash functions, int the number of bands, int the number of jar files, int reserved
+ * signatures: int[jar files][hash functions]
+ * bands:      for each band, long[jar files] sorted band keys and then int[jar files] jar IDs in the same order
+ * </pre>
+ */
+public class MinHashIndex {
+
+	public static final int MAGIC = 0x4a494c48; // "JILH"
+	public static final int VERSION = 1;
+	public static final int DEFAULT_HASH_COUNT = 128;
+	public static final int DEFAULT_BAND_COUNT = 32;
+	private static final int HEADER_SIZE = 24;
+	private static final long GOLDEN_RATIO = 0x9e3779b97f4a7c15L;
+
+	private ArrayList<Part> parts;
+	private int jarCount;
+	private int hashCount;
+	private int bandCount;
+
+	/**
+	 * Open index files.
+	 * Jar IDs in the i-th file are shifted by the number of jar files in the preceding files,
+	 * in the same way as Database concatenates multiple databases.
+	 */
+	public MinHashIndex(File[] files) throws IOException {
+		parts = new ArrayList<>(files.length);
+		jarCount = 0;
+		for (File f: files) {
+			Part p = new Part(f, jarCount);
+			if (parts.size() > 0 && (p.hashCount != hashCount || p.bandCount != bandCount)) {
+				throw new IOException("Inconsistent MinHash parameters: " + f.getAbsolutePath());
+			}
+			hashCount = p.hashCount;
+			bandCount = p.bandCount;
+			parts.add(p);
+			jarCount += p.jarCount;
+		}
+	}
+
+	/**
+	 * @return the number of jar files covered by the index.
+	 */
+	public int getJarCount() {
+		return jarCount;
+	}
+
+	/**
+	 * @return the number of values in a signature.
+	 */
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	/**
+	 * @return the MinHash signature of a set compatible with the index.
+	 */
+	public int[] computeSignature(ClassHashSet set) {
+		return computeSignature(set, hashCount);
+	}
+
+	/**
+	 * Find jar files having the same values as a signature in some bands.
+	 * @param minBandMatches specifies the number of bands that must be the same.
+	 * A larger value results in fewer candidates.
+	 * @return a map from a jar ID to the number of the same values in the signatures.
+	 * The number divided by getHashCount() is an estimate of the Jaccard index.
+	 */
+	public TIntIntHashMap findCandidates(int[] signature, int minBandMatches) {
+		TIntIntHashMap bandMatches = new TIntIntHashMap();
+		int rows = hashCount / bandCount;
+		for (int b=0; b<bandCount; ++b) {
+			long key = getBandKey(signature, b, rows);
+			for (Part p: parts) {
+				p.findBucket(b, key, bandMatches);
+			}
+		}
+		TIntIntHashMap candidates = new TIntIntHashMap();
+		for (int jar: bandMatches.keys()) {
+			if (bandMatches.get(jar) >= minBandMatches) {
+				candidates.put(jar, getPart(jar).countSameValues(jar, signature));
+			}
+		}
+		return candidates;
+	}
+
+	private Part getPart(int jar) {
+		for (int i=parts.size()-1; i>0; --i) {
+			if (parts.get(i).jarBase <= jar) return parts.get(i);
+		}
+		return parts.get(0);
+	}
+
+	/**
+	 * Create an index file with specified parameters.
+	 * @param bandCount must be a divisor of hashCount.
+	 * More bands (of fewer rows) find more candidates.
+	 */
+	public static void write(ClassHashSetList dataset, File file, int hashCount, int bandCount) throws IOException {
+		if (bandCount <= 0 || hashCount % bandCount != 0) {
+			throw new IllegalArgumentException("The number of bands must be a divisor of " + hashCount);
+		}
+		int jars = dataset.size();
+		int rows = hashCount / bandCount;
+		int[][] signatures = new int[jars][];
+		for (int jar=0; jar<jars; ++jar) {
+			signatures[jar] = computeSignature(dataset.get(jar), hashCount);
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(hashCount);
+		out.writeInt(bandCount);
+		out.writeInt(jars);
+		out.writeInt(0);
+		for (int[] signature: signatures) {
+			for (int v: signature) {
+				out.writeInt(v);
+			}
+		}
+		final long[] keys = new long[jars];
+		Integer[] order = new Integer[jars];
+		for (int b=0; b<bandCount; ++b) {
+			// Sort jar IDs by their keys
+			for (int jar=0; jar<jars; ++jar) {
+				keys[jar] = getBandKey(signatures[jar], b, rows);
+				order[jar] = jar;
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer o1, Integer o2) {
+					int c = Long.compare(keys[o1], keys[o2]);
+					return (c != 0) ? c : Integer.compare(o1, o2);
+				}
+			});
+			for (int k=0; k<jars; ++k) {
+				out.writeLong(keys[order[k]]);
+			}
+			for (int k=0; k<jars; ++k) {
+				out.writeInt(order[k]);
+			}
+		}
+		out.close();
+	}
+
+	/**
+	 * Compute a MinHash signature.
+	 * The k-th instance of a hash value is regarded as a distinct element
+	 * so that the signature approximates the Jaccard index between multisets.
+	 */
+	private static int[] computeSignature(ClassHashSet set, int hashCount) {
+		long[] min = new long[hashCount];
+		Arrays.fill(min, Long.MAX_VALUE);
+		for (ClassHash h: set) {
+			int count = set.count(h);
+			long fingerprint = h.getFingerprint();
+			for (int k=0; k<count; ++k) {
+				long element = mix(fingerprint + k * GOLDEN_RATIO);
+				for (int i=0; i<hashCount; ++i) {
+					long v = mix(element ^ ((i + 1) * GOLDEN_RATIO));
+					if (v < min[i]) min[i] = v;
+				}
+			}
+		}
+		int[] signature = new int[hashCount];
+		for (int i=0; i<hashCount; ++i) {
+			signature[i] = (int)(min[i] >>> 32);
+		}
+		return signature;
+	}
+
+	/**
+	 * The finalizer of MurmurHash3.
+	 */
+	private static long mix(long value) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return value;
+	}
+
+	private static long getBandKey(int[] signature, int band, int rows) {
+		long key = (band + 1) * GOLDEN_RATIO;
+		for (int r=0; r<rows; ++r) {
+			key = mix(key ^ (signature[band * rows + r] & 0xffffffffL));
+		}
+		return key;
+	}
+
+
+	/**
+	 * An index file.
+	 */
+	private static class Part {
+
+		private int jarBase;
+		private int jarCount;
+		private int hashCount;
+		private int bandCount;
+		private IntBuffer signatures;
+		private LongBuffer[] keys;
+		private IntBuffer[] jars;
+
+		public Part(File file, int jarBase) throws IOException {
+			this.jarBase = jarBase;
+			try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+				FileChannel channel = raf.getChannel();
+				ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+				if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+					throw new IOException("Unsupported MinHash file: " + file.getAbsolutePath());
+				}
+				hashCount = header.getInt(8);
+				bandCount = header.getInt(12);
+				jarCount = header.getInt(16);
+				long signaturesSize = (long)jarCount * hashCount * 4;
+				if (signaturesSize > Integer.MAX_VALUE) {
+					throw new IOException("Too many jar files in a MinHash file: " + file.getAbsolutePath());
+				}
+				signatures = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, signaturesSize).asIntBuffer();
+				keys = new LongBuffer[bandCount];
+				jars = new IntBuffer[bandCount];
+				long position = HEADER_SIZE + signaturesSize;
+				for (int b=0; b<bandCount; ++b) {
+					keys[b] = channel.map(FileChannel.MapMode.READ_ONLY, position, jarCount * 8L).asLongBuffer();
+					position += jarCount * 8L;
+					jars[b] = channel.map(FileChannel.MapMode.READ_ONLY, position, jarCount * 4L).asIntBuffer();
+					position += jarCount * 4L;
+				}
+			}
+		}
+
+		/**
+		 * Increment the number of matched bands of jar files having a key in a band.
+		 */
+		public void findBucket(int band, long key, TIntIntHashMap bandMatches) {
+			LongBuffer bandKeys = keys[band];
+			int low = 0;
+			int high = jarCount;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (bandKeys.get(mid) < key) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			for (int k=low; k<jarCount && bandKeys.get(k) == key; ++k) {
+				bandMatches.adjustOrPutValue(jarBase + jars[band].get(k), 1, 1);
+			}
+		}
+
+		/**
+		 * @return the number of the same values in a signature and the signature of a jar file.
+		 */
+		public int countSameValues(int jar, int[] signature) {
+			int base = (jar - jarBase) * hashCount;
+			int same = 0;
+			for (int i=0; i<hashCount; ++i) {
+				if (signatures.get(base + i) == signature[i]) same++;
+			}
+			return same;
+		}
+	}
+
+}
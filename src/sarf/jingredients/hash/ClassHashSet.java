@@ -1,308 +1,920 @@
-package sarf.jingredients.hash;
-
-import gnu.trove.map.hash.TObjectIntHashMap;
-import gnu.trove.procedure.TObjectIntProcedure;
-
-import java.io.EOFException;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.util.ArrayList;
-import java.util.Iterator;
-
-/**
- * Multiset of ClassHash objects
- */
-public class ClassHashSet implements Iterable<ClassHash> {
-
-	private TObjectIntHashMap<ClassHash> elementMap;
-	private int elementCount;
-	
-	/**
-	 * Create a new ClassHashSet for a given array of ClassHash objects.
-	 */
-	public ClassHashSet(ArrayList<ClassHash> list) {
-		elementCount = list.size();
-		TObjectIntHashMap<ClassHash> map = new TObjectIntHashMap<ClassHash>(list.size());
-		for (ClassHash h: list) {
-			map.adjustOrPutValue(h, 1, 1);
-		}
-		elementMap = map;
-	}
-
-	/**
-	 * Create an instance by loading a binary stream.
-	 * The binary stream must be created by writeToStream method.
-	 */
-	public static ClassHashSet readFromStream(ObjectInputStream stream) throws IOException {
-		try {
-			int size = stream.readInt();
-			ArrayList<ClassHash> elements = new ArrayList<>(size);
-			for (int i=0; i<size; ++i) {
-				elements.add(new ClassHash(stream));
-			}
-			return new ClassHashSet(elements);
-		} catch (EOFException e) {
-			return null;
-		}
-	}
-	
-	/**
-	 * Store a list of ClassHash to a binary stream 
-	 * so that a program can load the list using readFromStream method. 
-	 */
-	public static void writeToStream(ObjectOutputStream out, ArrayList<ClassHash> list) throws IOException {
-		out.writeInt(list.size());
-		for (ClassHash element: list) {
-			element.writeTo(out);
-		}
-	}
-	
-	/**
-	 * An internal constructor directly uses an internal representation. 
-	 */
-	private ClassHashSet(TObjectIntHashMap<ClassHash> elements, int size) {
-		this.elementMap = elements;
-		this.elementCount = size;
-	}
-	
-	/**
-	 * The total number of elements 
-	 */
-	public int size() {
-		return elementCount;
-	}
-	
-	/**
-	 * This method enables to visit hash values.
-	 * A hash value is visited at most once even if 
-	 * its multiple instances are included in the map.
-	 */
-	public Iterator<ClassHash> iterator() {
-		return elementMap.keySet().iterator();
-	}
-	
-	/**
-	 * Compute an intersection between the receiver object and another instance.
-	 * This method does not affect the receiver object.
-	 */
-	public ClassHashSet getIntersectionSet(ClassHashSet another) {
-		Intersection in = new Intersection();
-		another.elementMap.forEachEntry(in);
-		return in.getResult();
-	}
-	
-
-	private class Intersection implements TObjectIntProcedure<ClassHash> {
-
-		private TObjectIntHashMap<ClassHash> intersectionMap;
-		private int count;
-		
-		public Intersection() {
-			this.intersectionMap = new TObjectIntHashMap<ClassHash>();
-			this.count = 0;
-		}
-		
-		@Override
-		public boolean execute(ClassHash key, int v2) {
-			int v1 = elementMap.get(key);
-			if (v1 != elementMap.getNoEntryValue()) {
-				int value = Math.min(v1, v2);
-				intersectionMap.put(key, value);
-				count += value;
-			}
-			return true;
-		}
-		
-		public ClassHashSet getResult() { 
-			return new ClassHashSet(intersectionMap, count);
-		}
-	}
-	
-	
-	/**
-	 * Remove given hash values in the receiver object. 
-	 */
-	public void removeAll(ClassHashSet another) {
-		if (this.size() < another.size()) {
-			Remover r = new Remover(another.elementMap);
-			this.elementMap.forEachEntry(r);
-			this.elementCount = r.getResultantSize();
-		} else {
-			Remover2 r2 = new Remover2();
-			another.elementMap.forEachEntry(r2);
-			this.elementCount = r2.getResultantSize();
-		}
-	}
-	
-
-	public boolean containsAll(ClassHashSet another) {
-		Containment c = new Containment();
-		another.elementMap.forEachEntry(c);
-		return c.getResult();
-	}
-	
-	
-	/**
-	 * Compute a overlap coefficient. 
-	 * @return |this & another| / |another|
-	 */
-	public double overlap(ClassHashSet another) {
-		if (another.size() > 0) {
-			return intersection(another) * 1.0 / another.size();
-		} else {
-			return 0;
-		}
-	}
-
-	
-	private int intersection(ClassHashSet another) {
-		Counter c = new Counter();
-		another.elementMap.forEachEntry(c);
-		return c.getCount();
-	}
-
-
-	public boolean equals(ClassHashSet another) {
-		if (this.size() == another.size()) {
-			Equal e = new Equal();
-			another.elementMap.forEachEntry(e);
-			return e.getResult();
-		} else {
-			return false;
-		}
-	}
-	
-
-	private class Remover2 implements TObjectIntProcedure<ClassHash> {
-		
-		private int count;
-		
-		public Remover2() {
-			count = elementCount;
-		}
-		
-		@Override
-		public boolean execute(ClassHash key, int v2) {
-			int v1 = elementMap.get(key);
-			if (v1 != elementMap.getNoEntryValue()) {
-				int newValue = v1 - v2;
-				if (newValue <= 0) {
-					elementMap.remove(key);
-					count = count - v1;
-				} else {
-					elementMap.put(key, newValue);
-					count = count - v2;
-				}
-			}
-			return true;
-		}
-		
-		public int getResultantSize() {
-			return count;
-		}
-		
-	}
-
-	private class Remover implements TObjectIntProcedure<ClassHash> {
-		
-		private int count;
-		private TObjectIntHashMap<ClassHash> another;
-		
-		public Remover(TObjectIntHashMap<ClassHash> another) {
-			this.another = another;
-			count = elementCount;
-		}
-		
-		@Override
-		public boolean execute(ClassHash key, int v1) {
-			int v2 = another.get(key);
-			if (v2 != elementMap.getNoEntryValue()) {
-				int newValue = v1 - v2;
-				if (newValue <= 0) {
-					elementMap.remove(key);
-					count = count - v1;
-				} else {
-					elementMap.put(key, newValue);
-					count = count - v2;
-				}
-			}
-			return true;
-		}
-		
-		public int getResultantSize() {
-			return count;
-		}
-		
-	}
-	
-	/**
-	 * Count the number of ClassHash included in elementMap.
-	 */
-	private class Counter implements TObjectIntProcedure<ClassHash> {
-
-		private int count = 0;
-		
-		@Override
-		public boolean execute(ClassHash key, int v2) {
-			int v1 = elementMap.get(key);
-			if (v1 != elementMap.getNoEntryValue()) {
-				count += Math.min(v1, v2);
-			}
-			return true;
-		}
-		
-		public int getCount() {
-			return count;
-		}
-	}
-
-	private class Containment implements TObjectIntProcedure<ClassHash> {
-
-		private boolean result = true;
-		
-		@Override
-		public boolean execute(ClassHash key, int v2) {
-			int v1 = elementMap.get(key);
-			if (v1 != elementMap.getNoEntryValue()) {
-				if (v1 < v2) {
-					result = false;
-				}
-			} else {
-				result = false;
-			}
-			return result;
-		}
-		
-		public boolean getResult() {
-			return result;
-		}
-	}
-
-	
-	private class Equal implements TObjectIntProcedure<ClassHash> {
-
-		private boolean result = true;
-		private int count = 0;
-		
-		@Override
-		public boolean execute(ClassHash key, int v2) {
-			int v1 = elementMap.get(key);
-			if (v1 != elementMap.getNoEntryValue()) {
-				if (v1 != v2) {
-					result = false;
-				} else {
-					count += v2;
-				}
-			} else {
-				result = false;
-			}
-			return result;
-		}
-		
-		public boolean getResult() {
-			return result && (count == elementCount);
-		}
-	}
-
-}
+package sarf.jingredients.hash;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Multiset of ClassHash objects.
+ * The elements are stored in a sorted array without ClassHash objects.
+ * The first 8 bytes of a hash value are packed into a long value
+ * (its sign bit is flipped so that signed comparison follows the order of ClassHash),
+ * and the remaining 12 bytes are packed into a byte array.
+ * Since most hash values appear only once in a jar file,
+ * the number of instances is recorded only for hash values appearing twice or more.
+ * Set operations are implemented by merging or galloping on the sorted arrays.
+ * A fingerprint set keeps only the first 8 bytes (keys) of hash values.
+ * Hash values are compared only by their keys if either set is a fingerprint set,
+ * so that a full set can be compared with a fingerprint set.
+ */
+public class ClassHashSet implements Iterable<ClassHash> {
+
+	private static final int KEY_LENGTH = ClassHash.FINGERPRINT_LENGTH;
+	private static final int TAIL_LENGTH = ClassHash.SHA1LENGTH - KEY_LENGTH;
+
+	/**
+	 * Galloping search is used if a set is this times larger than another.
+	 */
+	private static final int GALLOP_RATIO = 16;
+
+	private long[] keys;
+	private byte[] tails; // null for a fingerprint set
+	private int distinctCount;
+
+	private int[] multiIndex;
+	private int[] multiCount;
+	private int multiLength;
+
+	private int elementCount;
+
+	/**
+	 * The sum of the keys of the elements weighted by their counts.
+	 */
+	private long setHash;
+
+	/**
+	 * Create a new ClassHashSet for a given array of ClassHash objects.
+	 * The list is usually sorted (e.g. a result of Component.createHashList);
+	 * otherwise, a sorted copy is internally created.
+	 */
+	public ClassHashSet(ArrayList<ClassHash> list) {
+		if (!isSorted(list)) {
+			list = new ArrayList<>(list);
+			Collections.sort(list);
+		}
+		Builder b = new Builder(list.size());
+		byte[] buf = new byte[ClassHash.SHA1LENGTH];
+		for (int i=0; i<list.size(); ) {
+			ClassHash h = list.get(i);
+			int count = 1;
+			while (i + count < list.size() && h.equals(list.get(i + count))) {
+				count++;
+			}
+			h.copyTo(buf);
+			b.add(toKey(buf, 0), buf, KEY_LENGTH, count);
+			i += count;
+		}
+		b.build(this);
+	}
+
+	/**
+	 * Create a copy of a given set.
+	 */
+	public ClassHashSet(ClassHashSet another) {
+		this.keys = Arrays.copyOf(another.keys, another.distinctCount);
+		if (another.tails != null) {
+			this.tails = Arrays.copyOf(another.tails, another.distinctCount * TAIL_LENGTH);
+		}
+		this.distinctCount = another.distinctCount;
+		if (another.multiIndex != null) {
+			this.multiIndex = Arrays.copyOf(another.multiIndex, another.multiLength);
+			this.multiCount = Arrays.copyOf(another.multiCount, another.multiLength);
+		}
+		this.multiLength = another.multiLength;
+		this.elementCount = another.elementCount;
+		this.setHash = another.setHash;
+	}
+
+	/**
+	 * An internal constructor for Builder.
+	 */
+	private ClassHashSet() {
+	}
+
+	private static boolean isSorted(ArrayList<ClassHash> list) {
+		for (int i=1; i<list.size(); ++i) {
+			if (list.get(i-1).compareTo(list.get(i)) > 0) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Create an instance from sorted hash values stored in a buffer.
+	 * @param position specifies the first byte of the first hash value.
+	 * @param size specifies the number of hash values.
+	 */
+	public static ClassHashSet readFromBuffer(ByteBuffer buffer, int position, int size) {
+		return readFromBuffer(buffer, position, size, ClassHash.SHA1LENGTH);
+	}
+
+	/**
+	 * Create an instance from sorted hash values or fingerprints stored in a buffer.
+	 * @param hashLength is either ClassHash.SHA1LENGTH or ClassHash.FINGERPRINT_LENGTH.
+	 * The latter creates a fingerprint set.
+	 */
+	public static ClassHashSet readFromBuffer(ByteBuffer buffer, int position, int size, int hashLength) {
+		assert hashLength == ClassHash.SHA1LENGTH || hashLength == ClassHash.FINGERPRINT_LENGTH;
+		Builder b = new Builder(size, hashLength == ClassHash.SHA1LENGTH);
+		byte[] buf = new byte[hashLength];
+		byte[] previous = new byte[hashLength];
+		int count = 0;
+		for (int i=0; i<size; ++i) {
+			for (int k=0; k<buf.length; ++k) {
+				buf[k] = buffer.get(position + k);
+			}
+			position += hashLength;
+			if (count > 0 && Arrays.equals(buf, previous)) {
+				count++;
+			} else {
+				if (count > 0) {
+					b.add(toKey(previous, 0), previous, KEY_LENGTH, count);
+				}
+				byte[] t = previous;
+				previous = buf;
+				buf = t;
+				count = 1;
+			}
+		}
+		if (count > 0) {
+			b.add(toKey(previous, 0), previous, KEY_LENGTH, count);
+		}
+		ClassHashSet set = new ClassHashSet();
+		b.build(set);
+		return set;
+	}
+
+	/**
+	 * Create an instance by loading a binary stream.
+	 * The binary stream must be created by writeToStream method.
+	 */
+	public static ClassHashSet readFromStream(ObjectInputStream stream) throws IOException {
+		try {
+			int size = stream.readInt();
+			byte[] content = new byte[size * ClassHash.SHA1LENGTH];
+			stream.readFully(content);
+			return readFromBuffer(ByteBuffer.wrap(content), 0, size);
+		} catch (EOFException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Store a list of ClassHash to a binary stream
+	 * so that a program can load the list using readFromStream method.
+	 */
+	public static void writeToStream(ObjectOutputStream out, ArrayList<ClassHash> list) throws IOException {
+		out.writeInt(list.size());
+		for (ClassHash element: list) {
+			element.writeTo(out);
+		}
+	}
+
+	/**
+	 * Encode the set in the delta encoding
+	 * so that a program can load the set using decodeDelta method.
+	 * Since the first 8 bytes of sorted hash values are increasing,
+	 * each distinct hash value is written as a difference from the previous one:
+	 * the high part of the difference is a varint and its low bytes are written as they are.
+	 * The number of the low bytes is chosen for each set to minimize the size.
+	 * The varint also includes a flag for a hash value having multiple instances.
+	 * The remaining 12 bytes are written as they are.
+	 */
+	public byte[] encodeDelta() throws IOException {
+		assert tails != null;
+		int lowBytes = 1;
+		long minSize = Long.MAX_VALUE;
+		for (int k=1; k<=KEY_LENGTH; ++k) {
+			long size = 0;
+			long previous = 0;
+			for (int i=0; i<distinctCount; ++i) {
+				long key = keys[i] ^ Long.MIN_VALUE;
+				size += varintLength(highPart(key - previous, k) << 1);
+				previous = key;
+			}
+			size += (long)k * distinctCount;
+			if (size < minSize) {
+				minSize = size;
+				lowBytes = k;
+			}
+		}
+		
+		ByteArrayOutputStream buf = new ByteArrayOutputStream((int)Math.min(Integer.MAX_VALUE, minSize + (long)distinctCount * TAIL_LENGTH + 16));
+		DataOutputStream data = new DataOutputStream(buf);
+		writeVarint(data, elementCount);
+		writeVarint(data, distinctCount);
+		data.writeByte(lowBytes);
+		long previous = 0;
+		int m = 0;
+		for (int i=0; i<distinctCount; ++i) {
+			long key = keys[i] ^ Long.MIN_VALUE;
+			long delta = key - previous;
+			boolean multi = m < multiLength && multiIndex[m] == i;
+			writeVarint(data, (highPart(delta, lowBytes) << 1) | (multi ? 1 : 0));
+			for (int k=lowBytes-1; k>=0; --k) {
+				data.writeByte((int)(delta >>> (k * 8)));
+			}
+			data.write(tails, i * TAIL_LENGTH, TAIL_LENGTH);
+			if (multi) {
+				writeVarint(data, multiCount[m] - 2);
+				m++;
+			}
+			previous = key;
+		}
+		data.close();
+		return buf.toByteArray();
+	}
+
+	/**
+	 * Create an instance from a set encoded by encodeDelta method.
+	 */
+	public static ClassHashSet decodeDelta(byte[] content) throws IOException {
+		return decodeDelta(content, 0, content.length);
+	}
+
+	/**
+	 * Create an instance from a set encoded by encodeDelta method.
+	 * @param offset specifies the first byte of the encoded set in the array.
+	 * @param length specifies the length of the encoded set.
+	 */
+	public static ClassHashSet decodeDelta(byte[] content, int offset, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(content, offset, length);
+		int size = (int)readVarint(buffer);
+		int distinct = (int)readVarint(buffer);
+		int lowBytes = buffer.get() & 0xff;
+		Builder b = new Builder(distinct);
+		long key = 0;
+		for (int i=0; i<distinct; ++i) {
+			long v = readVarint(buffer);
+			long delta = (lowBytes < KEY_LENGTH) ? (v >>> 1) << (lowBytes * 8) : 0;
+			long low = 0;
+			for (int k=0; k<lowBytes; ++k) {
+				low = (low << 8) | (buffer.get() & 0xff);
+			}
+			key += delta | low;
+			int tailOffset = buffer.position();
+			buffer.position(tailOffset + TAIL_LENGTH);
+			int count = ((v & 1) != 0) ? (int)readVarint(buffer) + 2 : 1;
+			b.add(key ^ Long.MIN_VALUE, content, tailOffset, count);
+		}
+		ClassHashSet set = new ClassHashSet();
+		b.build(set);
+		if (set.elementCount != size || buffer.hasRemaining()) {
+			throw new IOException("Broken delta-encoded set");
+		}
+		return set;
+	}
+
+	/**
+	 * @return the number of elements of a set encoded by encodeDelta method.
+	 * The set is not decoded.
+	 */
+	public static int getDeltaEncodedSize(byte[] content, int offset, int length) throws IOException {
+		return (int)readVarint(ByteBuffer.wrap(content, offset, length));
+	}
+
+	/**
+	 * @return an approximate number of bytes used by the set in the heap.
+	 */
+	public long getMemoryUsage() {
+		long usage = 64 + 16 + (long)keys.length * 8;
+		if (tails != null) usage += 16 + tails.length;
+		if (multiIndex != null) usage += 32 + (long)multiIndex.length * 8;
+		return usage;
+	}
+
+	/**
+	 * @return the bits of a value except for its low bytes.
+	 */
+	private static long highPart(long value, int lowBytes) {
+		return (lowBytes < KEY_LENGTH) ? value >>> (lowBytes * 8) : 0;
+	}
+
+	private static int varintLength(long value) {
+		int length = 1;
+		while ((value >>>= 7) != 0) {
+			length++;
+		}
+		return length;
+	}
+
+	private static void writeVarint(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int)value);
+	}
+
+	private static long readVarint(ByteBuffer buffer) throws IOException {
+		long value = 0;
+		for (int shift=0; shift<64; shift+=7) {
+			int b = buffer.get() & 0xff;
+			value |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return value;
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	/**
+	 * Translate the first 8 bytes of a hash value into a key.
+	 */
+	private static long toKey(byte[] hash, int offset) {
+		long key = 0;
+		for (int i=0; i<KEY_LENGTH; ++i) {
+			key = (key << 8) | (hash[offset + i] & 0xff);
+		}
+		return key ^ Long.MIN_VALUE;
+	}
+
+	private static long toKey(ByteBuffer buffer, int position) {
+		return buffer.getLong(position) ^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * @return true if the set keeps only fingerprints of hash values.
+	 */
+	public boolean isFingerprintSet() {
+		return tails == null;
+	}
+
+	/**
+	 * The total number of elements
+	 */
+	public int size() {
+		return elementCount;
+	}
+
+	/**
+	 * The number of distinct hash values
+	 */
+	public int distinctSize() {
+		return distinctCount;
+	}
+
+	/**
+	 * @return the number of instances of the index-th distinct hash value.
+	 */
+	public int countAt(int index) {
+		if (multiLength == 0) return 1;
+		int pos = Arrays.binarySearch(multiIndex, 0, multiLength, index);
+		return (pos >= 0) ? multiCount[pos] : 1;
+	}
+
+	/**
+	 * Compare the index-th element of the receiver with the j-th element of another.
+	 */
+	private int compareAt(int index, ClassHashSet another, int j) {
+		long k1 = keys[index];
+		long k2 = another.keys[j];
+		if (k1 != k2) {
+			return (k1 < k2) ? -1 : 1;
+		}
+		if (tails == null || another.tails == null) {
+			return 0;
+		}
+		return compareTail(tails, index * TAIL_LENGTH, another.tails, j * TAIL_LENGTH);
+	}
+
+	private static int compareTail(byte[] t1, int offset1, byte[] t2, int offset2) {
+		for (int i=0; i<TAIL_LENGTH; ++i) {
+			byte b1 = t1[offset1 + i];
+			byte b2 = t2[offset2 + i];
+			if (b1 != b2) {
+				return ClassHash.compareUnsignedByte(b1, b2);
+			}
+		}
+		return 0;
+	}
+
+	private static int compareTail(byte[] t1, int offset1, ByteBuffer t2, int offset2) {
+		for (int i=0; i<TAIL_LENGTH; ++i) {
+			byte b1 = t1[offset1 + i];
+			byte b2 = t2.get(offset2 + i);
+			if (b1 != b2) {
+				return ClassHash.compareUnsignedByte(b1, b2);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the position of a hash value, or a negative value if not found.
+	 * The hash value is given as a key and its tail in either a byte array or a buffer.
+	 */
+	private int find(long key, byte[] tail, ByteBuffer tailBuffer, int tailOffset) {
+		int low = 0;
+		int high = distinctCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int c;
+			if (keys[mid] != key) {
+				c = (keys[mid] < key) ? -1 : 1;
+			} else if (tails == null) {
+				c = 0;
+			} else if (tail != null) {
+				c = compareTail(tails, mid * TAIL_LENGTH, tail, tailOffset);
+			} else {
+				c = compareTail(tails, mid * TAIL_LENGTH, tailBuffer, tailOffset);
+			}
+			if (c < 0) {
+				low = mid + 1;
+			} else if (c > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * @return the number of instances of a given hash value in the set.
+	 */
+	public int count(ClassHash h) {
+		byte[] buf = new byte[ClassHash.SHA1LENGTH];
+		h.copyTo(buf);
+		int pos = find(toKey(buf, 0), buf, null, KEY_LENGTH);
+		return (pos >= 0) ? countAt(pos) : 0;
+	}
+
+	/**
+	 * @return the number of instances of a hash value stored in a buffer.
+	 */
+	public int count(ByteBuffer buffer, int position) {
+		int pos = find(toKey(buffer, position), null, buffer, position + KEY_LENGTH);
+		return (pos >= 0) ? countAt(pos) : 0;
+	}
+
+	/**
+	 * Find the first element that is the same as or larger than
+	 * the j-th element of another set, starting from the index-th element.
+	 * This method doubles a step size and then performs a binary search.
+	 */
+	private int gallop(int index, ClassHashSet another, int j) {
+		int step = 1;
+		int low = index;
+		int high = index;
+		while (high < distinctCount && compareAt(high, another, j) < 0) {
+			low = high + 1;
+			high = index + step;
+			step <<= 1;
+		}
+		if (high > distinctCount) high = distinctCount;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compareAt(mid, another, j) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * This method enables to visit hash values.
+	 * A hash value is visited at most once even if
+	 * its multiple instances are included in the map.
+	 * The hash values are visited in the ascending order.
+	 * The last 12 bytes of a hash value are zero for a fingerprint set.
+	 */
+	public Iterator<ClassHash> iterator() {
+		return new Iterator<ClassHash>() {
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index < distinctCount;
+			}
+
+			@Override
+			public ClassHash next() {
+				if (index >= distinctCount) throw new NoSuchElementException();
+				byte[] array = new byte[ClassHash.SHA1LENGTH];
+				long key = keys[index] ^ Long.MIN_VALUE;
+				for (int i=KEY_LENGTH-1; i>=0; --i) {
+					array[i] = (byte)key;
+					key >>>= 8;
+				}
+				if (tails != null) {
+					System.arraycopy(tails, index * TAIL_LENGTH, array, KEY_LENGTH, TAIL_LENGTH);
+				}
+				index++;
+				return new ClassHash(array);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Create a subset of the receiver object.
+	 * @param positions specifies the positions of selected hash values in the iteration order.
+	 * The positions must be sorted in the ascending order.
+	 * @param counts specifies the numbers of instances of the selected hash values.
+	 * @param length specifies the number of selected hash values.
+	 */
+	public ClassHashSet subset(int[] positions, int[] counts, int length) {
+		Builder b = new Builder(length, tails != null);
+		for (int k=0; k<length; ++k) {
+			int i = positions[k];
+			assert counts[k] <= countAt(i);
+			b.add(keys[i], tails, i * TAIL_LENGTH, counts[k]);
+		}
+		ClassHashSet result = new ClassHashSet();
+		b.build(result);
+		return result;
+	}
+
+	/**
+	 * Compute an intersection between the receiver object and another instance.
+	 * This method does not affect the receiver object.
+	 */
+	public ClassHashSet getIntersectionSet(ClassHashSet another) {
+		final Builder b = new Builder(Math.min(this.distinctCount, another.distinctCount), tails != null);
+		forEachCommon(another, new CommonElementProcedure() {
+			@Override
+			public void execute(int i, int c1, int j, int c2) {
+				b.add(keys[i], tails, i * TAIL_LENGTH, Math.min(c1, c2));
+			}
+		});
+		ClassHashSet result = new ClassHashSet();
+		b.build(result);
+		return result;
+	}
+
+	/**
+	 * Find the hash values of another set in the receiver object.
+	 * @param positions receives the positions of the common hash values in the receiver in the ascending order.
+	 * @param counts receives the numbers of instances in another set.
+	 * @return the number of the common hash values.
+	 */
+	public int locate(ClassHashSet another, final int[] positions, final int[] counts) {
+		final int[] found = new int[1];
+		forEachCommon(another, new CommonElementProcedure() {
+			@Override
+			public void execute(int i, int c1, int j, int c2) {
+				positions[found[0]] = i;
+				counts[found[0]] = c2;
+				found[0]++;
+			}
+		});
+		return found[0];
+	}
+
+	/**
+	 * A procedure called for each hash value included in both sets.
+	 */
+	private interface CommonElementProcedure {
+		/**
+		 * @param i is the position of a hash value in the receiver.
+		 * @param c1 is the number of instances in the receiver.
+		 * @param j is the position of the hash value in another set.
+		 * @param c2 is the number of instances in another set.
+		 */
+		public void execute(int i, int c1, int j, int c2);
+	}
+
+	/**
+	 * Visit the hash values included in both sets in the ascending order.
+	 * If one set is much smaller than the other, the smaller set is scanned
+	 * and the elements are searched in the larger set by galloping.
+	 * Otherwise, the two sets are simply merged.
+	 */
+	private void forEachCommon(ClassHashSet another, CommonElementProcedure proc) {
+		int i = 0;
+		int j = 0;
+		int m1 = 0;
+		int m2 = 0;
+		boolean gallopThis = (long)this.distinctCount > (long)another.distinctCount * GALLOP_RATIO;
+		boolean gallopAnother = (long)another.distinctCount > (long)this.distinctCount * GALLOP_RATIO;
+		while (i < this.distinctCount && j < another.distinctCount) {
+			int c = compareAt(i, another, j);
+			if (c == 0) {
+				while (m1 < this.multiLength && this.multiIndex[m1] < i) m1++;
+				while (m2 < another.multiLength && another.multiIndex[m2] < j) m2++;
+				int c1 = (m1 < this.multiLength && this.multiIndex[m1] == i) ? this.multiCount[m1] : 1;
+				int c2 = (m2 < another.multiLength && another.multiIndex[m2] == j) ? another.multiCount[m2] : 1;
+				proc.execute(i, c1, j, c2);
+				i++;
+				j++;
+			} else if (c < 0) {
+				if (gallopThis) {
+					i = this.gallop(i + 1, another, j);
+				} else {
+					i++;
+				}
+			} else {
+				if (gallopAnother) {
+					j = another.gallop(j + 1, this, i);
+				} else {
+					j++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove given hash values in the receiver object.
+	 */
+	public void removeAll(ClassHashSet another) {
+		if (this.distinctCount == 0 || another.distinctCount == 0) return;
+
+		// Compute new counts of the common elements
+		final int[] newCounts = new int[Math.min(this.distinctCount, another.distinctCount)];
+		final int[] positions = new int[newCounts.length];
+		final int[] found = new int[1];
+		forEachCommon(another, new CommonElementProcedure() {
+			@Override
+			public void execute(int i, int c1, int j, int c2) {
+				positions[found[0]] = i;
+				newCounts[found[0]] = c1 - c2;
+				found[0]++;
+			}
+		});
+		if (found[0] == 0) return;
+
+		// Compact the arrays in place
+		Builder b = new Builder(keys, tails);
+		int p = 0;
+		for (int i=0; i<distinctCount; ++i) {
+			int count;
+			if (p < found[0] && positions[p] == i) {
+				count = newCounts[p];
+				p++;
+			} else {
+				count = countAt(i);
+			}
+			if (count > 0) {
+				b.add(keys[i], tails, i * TAIL_LENGTH, count);
+			}
+		}
+		b.build(this);
+	}
+
+
+	public boolean containsAll(ClassHashSet another) {
+		if (another.distinctCount > this.distinctCount) return false;
+		final int[] matched = new int[1];
+		final boolean[] result = new boolean[] { true };
+		forEachCommon(another, new CommonElementProcedure() {
+			@Override
+			public void execute(int i, int c1, int j, int c2) {
+				matched[0]++;
+				if (c1 < c2) result[0] = false;
+			}
+		});
+		return result[0] && matched[0] == another.distinctCount;
+	}
+
+
+	/**
+	 * Compute a overlap coefficient.
+	 * @return |this & another| / |another|
+	 */
+	public double overlap(ClassHashSet another) {
+		if (another.size() > 0) {
+			return intersection(another) * 1.0 / another.size();
+		} else {
+			return 0;
+		}
+	}
+
+
+	/**
+	 * Compute a overlap coefficient if it may reach a threshold.
+	 * Unlike overlap(another), this method merges the sets and terminates
+	 * when the number of unmatched elements of another exceeds the limit.
+	 * @return |this & another| / |another| if it is the same as or larger than the threshold.
+	 * Otherwise, zero.
+	 */
+	public double overlap(ClassHashSet another, double threshold) {
+		int size = another.size();
+		if (size == 0) return 0;
+		int maxUnmatch = getMaxUnmatch(size, threshold);
+		if (size - this.size() > maxUnmatch) return 0;
+
+		int i = 0;
+		int j = 0;
+		int m1 = 0;
+		int m2 = 0;
+		int intersection = 0;
+		int unmatch = 0;
+		boolean gallopThis = (long)this.distinctCount > (long)another.distinctCount * GALLOP_RATIO;
+		while (i < this.distinctCount && j < another.distinctCount) {
+			int c = compareAt(i, another, j);
+			if (c < 0) {
+				i = gallopThis ? this.gallop(i + 1, another, j) : i + 1;
+				continue;
+			}
+			while (m2 < another.multiLength && another.multiIndex[m2] < j) m2++;
+			int c2 = (m2 < another.multiLength && another.multiIndex[m2] == j) ? another.multiCount[m2] : 1;
+			if (c == 0) {
+				while (m1 < this.multiLength && this.multiIndex[m1] < i) m1++;
+				int c1 = (m1 < this.multiLength && this.multiIndex[m1] == i) ? this.multiCount[m1] : 1;
+				intersection += Math.min(c1, c2);
+				unmatch += c2 - Math.min(c1, c2);
+				i++;
+			} else {
+				unmatch += c2;
+			}
+			j++;
+			if (unmatch > maxUnmatch) {
+				// terminate because there is no chance to reach the threshold
+				return 0;
+			}
+		}
+		if (size - intersection > maxUnmatch) return 0;
+		return intersection * 1.0 / size;
+	}
+
+	/**
+	 * @return the maximum number of unmatched elements of a set 
+	 * whose overlap coefficient reaches a threshold.
+	 * The value is consistent with the comparison (intersection * 1.0 / size >= threshold).
+	 */
+	public static int getMaxUnmatch(int size, double threshold) {
+		int minIntersection = Math.max(0, Math.min(size, (int)Math.ceil(size * threshold)));
+		while (minIntersection > 0 && (minIntersection - 1) * 1.0 / size >= threshold) minIntersection--;
+		while (minIntersection <= size && minIntersection * 1.0 / size < threshold) minIntersection++;
+		return size - minIntersection;
+	}
+
+
+	/**
+	 * @return |this & another|
+	 */
+	public int intersection(ClassHashSet another) {
+		final int[] count = new int[1];
+		forEachCommon(another, new CommonElementProcedure() {
+			@Override
+			public void execute(int i, int c1, int j, int c2) {
+				count[0] += Math.min(c1, c2);
+			}
+		});
+		return count[0];
+	}
+
+
+	/**
+	 * @return a hash value of the set independent of the order of elements.
+	 * Equal sets have the same hash value.
+	 * The value is computed when the set is created or modified.
+	 */
+	public long getSetHash() {
+		return setHash;
+	}
+
+	/**
+	 * @return a SHA-1 hash of the elements and their numbers of instances.
+	 * Equal sets have the same digest, and different sets have different digests in practice.
+	 */
+	public ClassHash getContentDigest() {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+		ByteBuffer buf = ByteBuffer.allocate(KEY_LENGTH + TAIL_LENGTH + 4);
+		buf.putInt(elementCount);
+		digest.update(buf.array(), 0, buf.position());
+		int m = 0;
+		for (int i=0; i<distinctCount; ++i) {
+			int count = 1;
+			if (m < multiLength && multiIndex[m] == i) {
+				count = multiCount[m++];
+			}
+			buf.clear();
+			buf.putLong(keys[i]);
+			if (tails != null) buf.put(tails, i * TAIL_LENGTH, TAIL_LENGTH);
+			buf.putInt(count);
+			digest.update(buf.array(), 0, buf.position());
+		}
+		return new ClassHash(digest.digest());
+	}
+
+	public boolean equals(ClassHashSet another) {
+		if (this == another) return true;
+		if (this.setHash != another.setHash ||
+			this.elementCount != another.elementCount ||
+			this.distinctCount != another.distinctCount ||
+			this.multiLength != another.multiLength ||
+			this.isFingerprintSet() != another.isFingerprintSet()) {
+			return false;
+		}
+		for (int i=0; i<distinctCount; ++i) {
+			if (keys[i] != another.keys[i]) return false;
+		}
+		for (int i=0; i<multiLength; ++i) {
+			if (multiIndex[i] != another.multiIndex[i] || multiCount[i] != another.multiCount[i]) return false;
+		}
+		if (tails != null) {
+			for (int i=0; i<distinctCount * TAIL_LENGTH; ++i) {
+				if (tails[i] != another.tails[i]) return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * A utility to create arrays in the ascending order of hash values.
+	 */
+	private static class Builder {
+
+		private long[] keys;
+		private byte[] tails;
+		private int distinctCount;
+		private int[] multiIndex;
+		private int[] multiCount;
+		private int multiLength;
+		private int elementCount;
+		private long setHash;
+
+		public Builder(int capacity) {
+			this(capacity, true);
+		}
+
+		/**
+		 * @param withTails is false for a fingerprint set.
+		 */
+		public Builder(int capacity, boolean withTails) {
+			this(new long[capacity], withTails ? new byte[capacity * TAIL_LENGTH] : null);
+		}
+
+		/**
+		 * Reuse arrays.
+		 * Elements of the arrays may be read by add method
+		 * if they are not overwritten yet.
+		 * tails is null for a fingerprint set.
+		 */
+		public Builder(long[] keys, byte[] tails) {
+			this.keys = keys;
+			this.tails = tails;
+		}
+
+		public void add(long key, byte[] tail, int tailOffset, int count) {
+			assert count > 0;
+			if (distinctCount == keys.length) {
+				int newCapacity = Math.max(4, keys.length * 2);
+				keys = Arrays.copyOf(keys, newCapacity);
+				if (tails != null) {
+					tails = Arrays.copyOf(tails, newCapacity * TAIL_LENGTH);
+				}
+			}
+			keys[distinctCount] = key;
+			if (tails != null) {
+				System.arraycopy(tail, tailOffset, tails, distinctCount * TAIL_LENGTH, TAIL_LENGTH);
+			}
+			if (count > 1) {
+				if (multiIndex == null) {
+					multiIndex = new int[4];
+					multiCount = new int[4];
+				} else if (multiLength == multiIndex.length) {
+					multiIndex = Arrays.copyOf(multiIndex, multiLength * 2);
+					multiCount = Arrays.copyOf(multiCount, multiLength * 2);
+				}
+				multiIndex[multiLength] = distinctCount;
+				multiCount[multiLength] = count;
+				multiLength++;
+			}
+			distinctCount++;
+			elementCount += count;
+			setHash += key * count;
+		}
+
+		public void build(ClassHashSet set) {
+			if (keys.length > distinctCount * 2 + 4) {
+				keys = Arrays.copyOf(keys, distinctCount);
+				if (tails != null) {
+					tails = Arrays.copyOf(tails, distinctCount * TAIL_LENGTH);
+				}
+			}
+			set.keys = keys;
+			set.tails = tails;
+			set.distinctCount = distinctCount;
+			set.multiIndex = multiIndex;
+			set.multiCount = multiCount;
+			set.multiLength = multiLength;
+			set.elementCount = elementCount;
+			set.setHash = setHash;
+		}
+	}
+
+}
@@ -0,0 +1,16 @@
+package sarf.jingredients.model;
+
+import sarf.jingredients.hash.ClassHash;
+
+/**
+ * Selects classes whose signatures are computed by Component.load.
+ */
+public interface ClassNameFilter {
+
+	/**
+	 * @param nameHash is the hash value of a normalized class name (ComponentEntry.SIG_CLASSNAME).
+	 * @return true if the signatures of the class are necessary.
+	 */
+	public boolean accept(ClassHash nameHash);
+
+}
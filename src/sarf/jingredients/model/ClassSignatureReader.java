@@ -0,0 +1,199 @@
+package sarf.jingredients.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import sarf.jingredients.hash.ClassHash;
+import soba.core.ClassInfo;
+import soba.core.ClassReadFailureException;
+import soba.core.signature.TypeResolver;
+
+/**
+ * Extracts the code and Software Bertillonage signatures of a class.
+ * Unlike soba's ClassInfo, the reader visits bytecode without building instruction lists;
+ * method calls and field accesses are directly given to SignatureBuilder.
+ * The resultant hash values are the same as those of Signature.getClassSignature(c, false) and Signature.getDaviesClassSignature(c).
+ * Only requested signatures are computed; method bodies are given to the builder only for the code signature.
+ * The other method bodies are still parsed to reject broken class files, as ClassInfo does.
+ * The constructor parses only the header of a class file, 
+ * so that a caller can decide whether the signatures are necessary from the class name.
+ */
+public class ClassSignatureReader extends ClassVisitor {
+
+	/**
+	 * The package name of a class in the default package, the same as ClassInfo.
+	 */
+	private static final String DEFAULT_PACKAGE = "$default$";
+
+	private String fileName;
+	private byte[] bytes;
+	private ClassReader reader;
+	private SignatureBuilder builder;
+	private boolean codeSignature;
+	private boolean daviesSignature;
+	private String className;
+	private boolean subroutine = false;
+
+	private ClassHash codeHash;
+	private ClassHash daviesHash;
+
+	/**
+	 * Read a class file.
+	 * @param fileName is used in an error message.
+	 * @param codeSignature specifies whether the code signature is computed.
+	 * @param daviesSignature specifies whether the Software Bertillonage signature is computed.
+	 * If both are false, the reader only verifies that the class file can be parsed.
+	 */
+	public ClassSignatureReader(String fileName, byte[] bytes, boolean codeSignature, boolean daviesSignature) throws IOException {
+		this(fileName, bytes);
+		read(codeSignature, daviesSignature);
+	}
+
+	/**
+	 * Read the header of a class file to obtain the class name.
+	 * Signatures are computed by read.
+	 * @param fileName is used in an error message.
+	 */
+	public ClassSignatureReader(String fileName, byte[] bytes) throws IOException {
+		super(Opcodes.ASM5);
+		this.fileName = fileName;
+		this.bytes = bytes;
+		try {
+			reader = new ClassReader(bytes);
+			className = reader.getClassName();
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new ClassReadFailureException("ASM ClassReader cannot parse the bytecode. " + fileName + " " + e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Visit the whole class file.
+	 * The method is called at most once.
+	 * @param codeSignature specifies whether the code signature is computed.
+	 * @param daviesSignature specifies whether the Software Bertillonage signature is computed.
+	 * If both are false, the reader only verifies that the class file can be parsed.
+	 */
+	public void read(boolean codeSignature, boolean daviesSignature) throws IOException {
+		assert reader != null: "The class file has been read.";
+		this.codeSignature = codeSignature;
+		this.daviesSignature = daviesSignature;
+		if (codeSignature || daviesSignature) {
+			builder = SignatureBuilder.getInstance();
+		}
+		reader.accept(this, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		if (subroutine) {
+			// ClassInfo inlines JSR/RET subroutines that duplicate instructions in a method body
+			ClassInfo c = new ClassInfo(fileName, new ByteArrayInputStream(bytes));
+			Signature.visitClass(c, false);
+		}
+		if (codeSignature) codeHash = builder.getClassHash();
+		if (daviesSignature) daviesHash = builder.getDaviesClassHash();
+		builder = null;
+		reader = null;
+		bytes = null;
+	}
+
+	/**
+	 * @return a class name with its package name.
+	 * A package name is separated by "/".
+	 */
+	public String getClassName() {
+		return className;
+	}
+
+	/**
+	 * @return a package name in the same format as ClassInfo.getPackageName().
+	 */
+	public String getPackageName() {
+		int index = className.lastIndexOf('/');
+		return (index >= 0) ? className.substring(0, index) : DEFAULT_PACKAGE;
+	}
+
+	/**
+	 * @return the hash value of the code signature, or null if it is not computed.
+	 */
+	public ClassHash getClassHash() {
+		return codeHash;
+	}
+
+	/**
+	 * @return the hash value of the Software Bertillonage signature, or null if it is not computed.
+	 */
+	public ClassHash getDaviesClassHash() {
+		return daviesHash;
+	}
+
+	@Override
+	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+		if (builder != null) {
+			builder.startClass(name, superName, interfaces, false);
+		}
+	}
+
+	@Override
+	public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+		if (codeSignature && Signature.isRegularField(name)) {
+			// The same type name as FieldInfo.getFieldTypeName()
+			builder.addField(name, TypeResolver.getTypeName(signature != null ? signature : desc));
+		}
+		return null;
+	}
+
+	@Override
+	public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+		// Method bodies excluded from signatures are parsed by emptyVisitor to verify the class file
+		if (builder == null || !Signature.isRegularMethod(name, access)) {
+			return emptyVisitor;
+		}
+		builder.startMethod(access, name, desc, exceptions);
+		if (!codeSignature || (access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+			builder.endMethod();
+			return emptyVisitor;
+		}
+		return methodVisitor;
+	}
+
+	@Override
+	public void visitEnd() {
+		if (codeSignature) {
+			builder.endClass();
+		}
+	}
+
+	private static final MethodVisitor emptyVisitor = new MethodVisitor(Opcodes.ASM5) {
+	};
+
+	/**
+	 * Gives method calls and field accesses in a method body to the builder.
+	 */
+	private MethodVisitor methodVisitor = new MethodVisitor(Opcodes.ASM5) {
+
+		@Override
+		public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+			builder.addCall(owner, name, desc);
+		}
+
+		@Override
+		public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+			builder.addFieldAccess(owner, name, desc);
+		}
+
+		@Override
+		public void visitJumpInsn(int opcode, Label label) {
+			if (opcode == Opcodes.JSR) subroutine = true;
+		}
+
+		@Override
+		public void visitEnd() {
+			builder.endMethod();
+		}
+	};
+
+}
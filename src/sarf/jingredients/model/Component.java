@@ -1,144 +1,277 @@
-package sarf.jingredients.model;
-
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
-import java.security.DigestInputStream;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.TreeSet;
-
-import sarf.jingredients.hash.ClassHash;
-import sarf.jingredients.util.ComponentUtil;
-import soba.core.ClassInfo;
-import soba.util.files.IClassListCallback;
-import soba.util.files.ZipFile;
-
-public class Component implements IClassListCallback {
-
-	
-	private boolean error = false;
-	private File jar;
-	private TreeSet<String> packageNames = new TreeSet<>();
-	private ArrayList<ComponentEntry> entries = new ArrayList<>();
-	private HashSet<String> classfilenames = new HashSet<>();
-	private HashSet<String> rawnames = new HashSet<>();
-	
-	public static Component load(File jar, boolean searchRecursive) {
-		Component c = new Component(jar);
-		ZipFile f = new ZipFile(jar);
-		if (searchRecursive) f.enableRecursiveSearch();
-		f.process(c);
-		if (!c.error && c.entries.size() > 0) {
-			return c;
-		}
-		else return null;
-	}
-	
-	private Component(File f) {
-		this.jar = f;
-	}
-	
-	public File getFile() {
-		return jar;
-	}
-	
-	
-	@Override
-	public boolean reportError(String name, Exception e) {
-		System.out.print("[ERROR] Last Entry: ");
-		System.out.println(name);
-		e.printStackTrace(System.out);
-		error = true; // This setting removes the jar file from analysis.
-		return false;
-	}
-	
-	public static byte[] getSHA1(byte[] bytearray) {
-		try {
-			MessageDigest digest = MessageDigest.getInstance("SHA-1");
-			return digest.digest(bytearray);
-		} catch (NoSuchAlgorithmException e) {
-			assert false;
-			return null;
-		}
-	}
-
-	public static MessageDigest getAlgorithm() {
-		try {
-			MessageDigest digest = MessageDigest.getInstance("SHA-1");
-			return digest;
-		} catch (NoSuchAlgorithmException e) {
-			assert false;
-			return null;
-		}
-	}
-
-	@Override
-	public void process(String name, InputStream stream) throws IOException {
-		// skip a duplicated entry.  
-		// A normal jar file contains a class once, but a corrupted zip file may contain a number of instances of the same class. 
-		if (classfilenames.contains(name)) {
-			return; 
-		}
-		classfilenames.add(name);
-
-		MessageDigest digest = getAlgorithm();
-		DigestInputStream s = new DigestInputStream(stream, digest);
-		ClassInfo c = new ClassInfo(name, s);
-		byte[] sha1 = digest.digest();
-		
-		String className = Signature.normalizeType(c.getClassName(),  false);
-		String rawClassName = c.getClassName();
-		rawnames.add(rawClassName);
-
-		ComponentEntry entry = new ComponentEntry(rawClassName, className, sha1, Signature.getClassSignature(c, false), Signature.getDaviesClassSignature(c));
-		entries.add(entry);
-
-		packageNames.add(c.getPackageName());
-	}
-
-	
-	@Override
-	public boolean isTarget(String name) {
-		return ComponentUtil.isClassFile(name);
-	}
-	
-	
-	public ArrayList<ComponentEntry> getEntries() {
-		return entries;
-	}
-	
-	
-	public Set<String> getRawNames() {
-		return rawnames;
-	}
-	
-	
-	public ArrayList<ClassHash> createHashList(int sig) {
-		ArrayList<ClassHash> hashes = new ArrayList<>(entries.size());
-		for (ComponentEntry e: entries) {
-			hashes.add(e.getClassHash(sig));
-		}
-		Collections.sort(hashes);
-		return hashes;
-	}
-
-	
-	public ClassHash getPackageSetHash() {
-		StringBuilder builder = new StringBuilder();
-		for (String p: packageNames) {
-			builder.append(p);
-			builder.append(";");
-		}
-		ClassHash h = new ClassHash(builder.toString());
-		return h;
-	}
-	
-	
-
-
-}
+package sarf.jingredients.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.util.ComponentUtil;
+import soba.util.files.IClassListCallback;
+import soba.util.files.ZipFile;
+
+public class Component implements IClassListCallback {
+
+	
+	private boolean error = false;
+	private File jar;
+	private TreeSet<String> packageNames = new TreeSet<>();
+	private ArrayList<ComponentEntry> entries = new ArrayList<>();
+	private HashSet<String> classfilenames = new HashSet<>();
+	private HashSet<String> rawnames = new HashSet<>();
+	private TreeMap<String, Component> nestedComponents = new TreeMap<>();
+	private boolean[] signatures;
+	private ClassNameFilter nameFilter;
+	private boolean skipped = false;
+	
+	/**
+	 * Load classes in a jar file with all the signature types.
+	 * @return a component, or null if the file includes no classes or broken class files.
+	 */
+	public static Component load(File jar, boolean searchRecursive) {
+		boolean[] signatures = new boolean[ComponentEntry.SIG_COUNT];
+		Arrays.fill(signatures, true);
+		return load(jar, searchRecursive, null, signatures);
+	}
+	
+	/**
+	 * Load classes in a jar file.
+	 * @param signatureTypes specifies signature types (ComponentEntry.SIG_*) used by a caller.
+	 * Only the specified signatures are computed and kept in entries.
+	 * At least one type must be specified; verify checks a jar file without signatures.
+	 * @return a component, or null if the file includes no classes or broken class files.
+	 */
+	public static Component load(File jar, boolean searchRecursive, int... signatureTypes) {
+		return load(jar, searchRecursive, null, signatureTypes);
+	}
+	
+	/**
+	 * Check whether the class files in a jar file can be parsed, without computing signatures.
+	 * @return a component having no signatures, or null if the file includes no classes or broken class files.
+	 */
+	public static Component verify(File jar, boolean searchRecursive) {
+		return load(jar, searchRecursive, null, new boolean[ComponentEntry.SIG_COUNT]);
+	}
+	
+	/**
+	 * Load classes in a jar file, computing signatures only for classes accepted by a filter.
+	 * A class name is obtained from the header of a class file; 
+	 * the other parts of a rejected class are never parsed.
+	 * A rejected class has only the class name signature, 
+	 * and it is excluded from createHashList for the other signature types.
+	 * @param nameFilter selects classes.  Null accepts all the classes.
+	 * @return a component, or null if the file includes no classes or broken class files.
+	 * Broken class files are detected only in accepted classes.
+	 */
+	public static Component load(File jar, boolean searchRecursive, ClassNameFilter nameFilter, int... signatureTypes) {
+		if (signatureTypes.length == 0) {
+			throw new IllegalArgumentException("No signature types are specified.  Use verify to check a jar file.");
+		}
+		boolean[] signatures = new boolean[ComponentEntry.SIG_COUNT];
+		for (int sig: signatureTypes) {
+			signatures[sig] = true;
+		}
+		return load(jar, searchRecursive, nameFilter, signatures);
+	}
+	
+	private static Component load(File jar, boolean searchRecursive, ClassNameFilter nameFilter, boolean[] signatures) {
+		Component c = new Component(jar);
+		c.nameFilter = nameFilter;
+		c.signatures = signatures;
+		ZipFile f = new ZipFile(jar);
+		if (searchRecursive) f.enableRecursiveSearch();
+		f.process(c);
+		if (!c.error && c.entries.size() > 0) {
+			return c;
+		}
+		else return null;
+	}
+	
+	private Component(File f) {
+		this.jar = f;
+	}
+	
+	public File getFile() {
+		return jar;
+	}
+	
+	
+	@Override
+	public boolean reportError(String name, Exception e) {
+		System.out.print("[ERROR] Last Entry: ");
+		System.out.println(name);
+		e.printStackTrace(System.out);
+		error = true; // This setting removes the jar file from analysis.
+		return false;
+	}
+	
+	public static byte[] getSHA1(byte[] bytearray) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			return digest.digest(bytearray);
+		} catch (NoSuchAlgorithmException e) {
+			assert false;
+			return null;
+		}
+	}
+
+	public static MessageDigest getAlgorithm() {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			return digest;
+		} catch (NoSuchAlgorithmException e) {
+			assert false;
+			return null;
+		}
+	}
+
+	@Override
+	public void process(String name, InputStream stream) throws IOException {
+		// skip a duplicated entry.  
+		// A normal jar file contains a class once, but a corrupted zip file may contain a number of instances of the same class. 
+		if (classfilenames.contains(name)) {
+			return; 
+		}
+		classfilenames.add(name);
+
+		byte[] bytes = readToEnd(stream);
+		ClassSignatureReader c = new ClassSignatureReader(name, bytes);
+		
+		String className = Signature.normalizeType(c.getClassName(),  false);
+		String rawClassName = c.getClassName();
+		rawnames.add(rawClassName);
+
+		ClassHash[] hashes = new ClassHash[ComponentEntry.SIG_COUNT];
+		if (signatures[ComponentEntry.SIG_CLASSNAME] || nameFilter != null) hashes[ComponentEntry.SIG_CLASSNAME] = new ClassHash(className);
+		if (nameFilter == null || nameFilter.accept(hashes[ComponentEntry.SIG_CLASSNAME])) {
+			c.read(signatures[ComponentEntry.SIG_CODE], signatures[ComponentEntry.SIG_BERTILLONAGE]);
+			if (signatures[ComponentEntry.SIG_FILE]) hashes[ComponentEntry.SIG_FILE] = new ClassHash(getSHA1(bytes));
+			hashes[ComponentEntry.SIG_CODE] = c.getClassHash();
+			hashes[ComponentEntry.SIG_BERTILLONAGE] = c.getDaviesClassHash();
+		} else {
+			skipped = true;
+		}
+		ComponentEntry entry = new ComponentEntry(rawClassName, className, hashes);
+		entries.add(entry);
+
+		packageNames.add(c.getPackageName());
+		
+		// Record the entry also in a nested archive found by a recursive search
+		String archive = getNestedArchive(name);
+		if (archive != null) {
+			Component nested = nestedComponents.get(archive);
+			if (nested == null) {
+				nested = new Component(new File(archive));
+				nested.signatures = signatures;
+				nestedComponents.put(archive, nested);
+			}
+			nested.classfilenames.add(name);
+			nested.rawnames.add(rawClassName);
+			nested.entries.add(entry);
+			nested.packageNames.add(c.getPackageName());
+		}
+	}
+	
+	private static byte[] readToEnd(InputStream stream) throws IOException {
+		byte[] buf = new byte[4096];
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		int n;
+		while ((n = stream.read(buf, 0, buf.length)) > 0) {
+			buffer.write(buf, 0, n);
+		}
+		return buffer.toByteArray();
+	}
+	
+	/**
+	 * @param name is an entry name given by ZipFile, i.e. an archive path followed by "/" and a path in the archive.
+	 * @return the path of the innermost nested archive including the entry,
+	 * or null if the entry is directly included in the component. 
+	 */
+	private String getNestedArchive(String name) {
+		String prefix = jar.getAbsolutePath() + "/";
+		if (!name.startsWith(prefix)) return null;
+		for (int i=name.lastIndexOf('/'); i > prefix.length(); i=name.lastIndexOf('/', i-1)) {
+			if (ZipFile.isZipFile(name.substring(prefix.length(), i))) {
+				return name.substring(0, i);
+			}
+		}
+		return null;
+	}
+
+	
+	@Override
+	public boolean isTarget(String name) {
+		return ComponentUtil.isClassFile(name);
+	}
+	
+	
+	public ArrayList<ComponentEntry> getEntries() {
+		return entries;
+	}
+	
+	
+	public Set<String> getRawNames() {
+		return rawnames;
+	}
+	
+	
+	/**
+	 * @return components representing nested archives found by a recursive search, in the order of their paths.
+	 * An entry of a nested archive is also included in the receiver.
+	 */
+	public Collection<Component> getNestedComponents() {
+		return nestedComponents.values();
+	}
+	
+	
+	/**
+	 * @param sig must be one of the signature types given to load.
+	 * @return the sorted hash values of the classes.  
+	 * Classes rejected by a name filter are not included except for the class name signature.
+	 * @throws IllegalStateException if the signature type is not computed.
+	 */
+	public ArrayList<ClassHash> createHashList(int sig) {
+		if (!signatures[sig]) {
+			throw new IllegalStateException("The signature is not computed: " + sig);
+		}
+		ArrayList<ClassHash> hashes = new ArrayList<>(entries.size());
+		for (ComponentEntry e: entries) {
+			if (e.hasClassHash(sig)) hashes.add(e.getClassHash(sig));
+		}
+		Collections.sort(hashes);
+		return hashes;
+	}
+	
+	/**
+	 * @return true if a name filter has rejected some classes in the component.
+	 * Such a component is not suitable for a similarity computed with all the classes.
+	 */
+	public boolean hasSkippedClasses() {
+		return skipped;
+	}
+
+	
+	public ClassHash getPackageSetHash() {
+		StringBuilder builder = new StringBuilder();
+		for (String p: packageNames) {
+			builder.append(p);
+			builder.append(";");
+		}
+		ClassHash h = new ClassHash(builder.toString());
+		return h;
+	}
+	
+	
+
+
+}
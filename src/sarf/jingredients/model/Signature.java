@@ -1,209 +1,232 @@
-package sarf.jingredients.model;
-
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.regex.Pattern;
-
-import org.objectweb.asm.Opcodes;
-import org.objectweb.asm.tree.AbstractInsnNode;
-import org.objectweb.asm.tree.FieldInsnNode;
-import org.objectweb.asm.tree.InsnList;
-import org.objectweb.asm.tree.MethodInsnNode;
-import org.objectweb.asm.tree.MethodNode;
-
-import soba.core.ClassInfo;
-import soba.core.FieldInfo;
-import soba.core.MethodInfo;
-import soba.core.signature.MethodSignatureReader;
-import soba.core.signature.TypeResolver;
-
-public class Signature {
-
-	
-	public static final String METHOD_SEPARATOR = "#";
-
-	
-	public static boolean isAnonymousClass(String name) {
-		return name.matches(".+\\$([0-9]+)\\Z");
-	}
-	
-
-	private static boolean isRegularMethod(MethodInfo m) {
-		return !m.getMethodName().contains("$") && !m.isSynthetic();
-	}
-	
-	
-	private static boolean isRegularField(FieldInfo f) {
-		return !f.getFieldName().contains("$");
-	}
-	
-	
-	public static String getDaviesClassSignature(ClassInfo c) {
-
-		String className = Signature.normalizeType(c.getClassName(),  false);
-		String superClassName = Signature.normalizeType(c.getSuperClass(), false);
-		ArrayList<String> interfaces = new ArrayList<>(c.getInterfaces());
-		for (int i=0; i<interfaces.size(); ++i) {
-			interfaces.set(i, Signature.normalizeType(interfaces.get(i), true));
-		}
-		Collections.sort(interfaces);
-		String interfaceSig = Signature.concat(Signature.normalizeType(superClassName, true), interfaces, ";");
-		
-		ArrayList<String> members = new ArrayList<String>();
-		for (int i=0; i<c.getMethodCount(); i++) {
-			MethodInfo m = c.getMethod(i);
-			if (isRegularMethod(m)) {
-				String methodSig = Signature.getMethodSignature(m, false);
-				members.add(methodSig);
-			}
-		}
-
-		String daviesSig = Signature.concat(className + ";" + interfaceSig, members, ";");
-
-		return daviesSig;
-	}
-
-
-	public static String getClassSignature(ClassInfo c, boolean removePackage) {
-
-		String className = Signature.normalizeType(c.getClassName(),  removePackage);
-		String superClassName = Signature.normalizeType(c.getSuperClass(), removePackage);
-		ArrayList<String> interfaces = new ArrayList<>(c.getInterfaces());
-		for (int i=0; i<interfaces.size(); ++i) {
-			interfaces.set(i, Signature.normalizeType(interfaces.get(i), removePackage));
-		}
-		Collections.sort(interfaces);
-		
-		String interfaceSig = Signature.concat(superClassName, interfaces, ";");
-		
-		ArrayList<String> members = new ArrayList<String>();
-		for (int i=0; i<c.getMethodCount(); i++) {
-			MethodInfo m = c.getMethod(i);
-			if (isRegularMethod(m)) {
-				String methodSig = Signature.getMethodSignature(m, removePackage);
-				if (m.hasMethodBody()) {
-					String bodySig = Signature.getMethodBodySignature(m.getMethodNode(), removePackage);
-					members.add(methodSig + "[" + bodySig + "]");
-				} else {
-					members.add(methodSig + "[]");
-				}
-			}
-		}
-		for (int i=0; i<c.getFieldCount(); i++) {
-			FieldInfo f = c.getField(i);
-			if (isRegularField(f)) {
-				String fieldSig = Signature.getFieldSignature(f, removePackage);
-				members.add(fieldSig);
-			}
-		}
-		Collections.sort(members);
-
-		String codeSig = Signature.concat(className + ";" + interfaceSig, members, ";");
-
-		return codeSig;
-	}
-
-	
-	
-	public static String getFieldSignature(FieldInfo f, boolean removePackage) {
-		StringBuilder buf = new StringBuilder();
-		buf.append(f.getFieldName());
-		buf.append(METHOD_SEPARATOR);
-		buf.append(Signature.normalizeType(f.getFieldTypeName(), removePackage));
-		return buf.toString();
-	}
-	
-	
-	public static String getMethodSignature(MethodInfo m, boolean removePackage) {
-		StringBuilder buf = new StringBuilder();
-		buf.append(m.getMethodName());
-		buf.append(METHOD_SEPARATOR);
-		if (m.isStatic()) buf.append("static");
-		if (m.isPublic()) buf.append("public");
-		if (m.isProtected()) buf.append("protected");
-		if (m.isPrivate()) buf.append("private");
-		if ((m.getMethodNode().access & Opcodes.ACC_SYNCHRONIZED) != 0) buf.append("synchronized");
-		buf.append(METHOD_SEPARATOR);
-		for (String s: m.getMethodNode().exceptions) {
-			buf.append(Signature.normalizeType(s, removePackage));
-			buf.append(";");
-		}
-		buf.append(METHOD_SEPARATOR);
-		buf.append(Signature.normalizeType(m.getReturnType(), removePackage));
-		for (int i=0; i<m.getParamCount(); ++i) {
-			buf.append(METHOD_SEPARATOR);
-			buf.append(Signature.normalizeType(m.getParamType(i), removePackage));
-		}
-		return buf.toString();
-	}
-	
-
-	public static String getMethodBodySignature(MethodNode node, boolean removePackage) {
-		ArrayList<String> signatures = new ArrayList<String>();
-		InsnList instructions = node.instructions;
-		if (instructions != null && instructions.size() > 0) {
-			for (int i=0; i<instructions.size(); ++i) {
-				AbstractInsnNode n = instructions.get(i);
-				if (n.getType() == AbstractInsnNode.METHOD_INSN) {
-					MethodInsnNode m = (MethodInsnNode)n;
-					StringBuilder callSig = new StringBuilder();
-					callSig.append(Signature.normalizeType(m.owner, removePackage));
-					callSig.append("#");
-					callSig.append(m.name);
-					MethodSignatureReader reader = new MethodSignatureReader(m.desc);
-					for (int p=0; p<reader.getParamCount(); ++p) {
-						String t = Signature.normalizeType(reader.getParamType(p), removePackage);
-						callSig.append("#");
-						callSig.append(t);
-					}
-					signatures.add(callSig.toString());
-				} else if (n.getType() == AbstractInsnNode.FIELD_INSN) {
-					FieldInsnNode f = (FieldInsnNode)n;
-					StringBuilder fieldSig = new StringBuilder();
-					fieldSig.append(Signature.normalizeType(f.owner, removePackage));
-					fieldSig.append("#");
-					fieldSig.append(f.name);
-					fieldSig.append("#");
-					fieldSig.append(Signature.normalizeType(TypeResolver.getTypeName(f.desc), removePackage));
-					signatures.add(fieldSig.toString());
-				}
-			}
-			Collections.sort(signatures);
-		}
-		StringBuilder builder = new StringBuilder();
-		for (String s: signatures) {
-			builder.append(s);
-			builder.append(";");
-		}
-		return builder.toString();
-	}
-	
-
-	
-	public static String normalizeType(String typeName, boolean removePackage) {
-		if (typeName == null) return "";
-		if (removePackage) return removeAnonymousInteger(removePackageFromType(typeName));
-		else return removeAnonymousInteger(typeName);
-	}
-	
-	static Pattern p = Pattern.compile("\\$([0-9]+)");
-	
-	private static String removeAnonymousInteger(String className) {
-		return p.matcher(className).replaceAll("%A");
-	}
-	
-	private static String removePackageFromType(String desc) {
-		return desc.replaceAll("[a-zA-Z_$][a-zA-Z_$0-9]*/", "");
-	}
-	
-	public static String concat(String header, ArrayList<String> signatures, String sep) {
-		StringBuilder builder = new StringBuilder(65536);
-		builder.append(header);
-		for (int i=0; i<signatures.size(); ++i) {
-			builder.append(sep);
-			builder.append(signatures.get(i));
-		}
-		 return builder.toString();
-	}
-
-}
+package sarf.jingredients.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import sarf.jingredients.util.ConcurrentCache;
+import soba.core.ClassInfo;
+import soba.core.FieldInfo;
+import soba.core.MethodInfo;
+
+public class Signature {
+
+	
+	public static final String METHOD_SEPARATOR = "#";
+
+	
+	public static boolean isAnonymousClass(String name) {
+		return name.matches(".+\\$([0-9]+)\\Z");
+	}
+	
+
+	static boolean isRegularMethod(String name, int access) {
+		return !name.contains("$") && (access & Opcodes.ACC_SYNTHETIC) == 0;
+	}
+	
+	
+	static boolean isRegularField(String name) {
+		return !name.contains("$");
+	}
+	
+	
+	public static String getDaviesClassSignature(ClassInfo c) {
+		return visitClass(c, false).getDaviesClassSignature();
+	}
+
+
+	public static String getClassSignature(ClassInfo c, boolean removePackage) {
+		return visitClass(c, removePackage).getClassSignature();
+	}
+
+	
+	/**
+	 * Give the members of a class to the builder for the current thread.
+	 * @return the builder including the signatures of the class.
+	 */
+	static SignatureBuilder visitClass(ClassInfo c, boolean removePackage) {
+		SignatureBuilder builder = SignatureBuilder.getInstance();
+		List<String> interfaces = c.getInterfaces();
+		builder.startClass(c.getClassName(), c.getSuperClass(), interfaces.toArray(new String[interfaces.size()]), removePackage);
+		for (int i=0; i<c.getMethodCount(); i++) {
+			MethodInfo m = c.getMethod(i);
+			MethodNode node = m.getMethodNode();
+			if (isRegularMethod(node.name, node.access)) {
+				builder.startMethod(node.access, node.name, node.desc, node.exceptions.toArray(new String[node.exceptions.size()]));
+				if (m.hasMethodBody()) {
+					InsnList instructions = node.instructions;
+					for (int k=0; k<instructions.size(); ++k) {
+						AbstractInsnNode n = instructions.get(k);
+						if (n.getType() == AbstractInsnNode.METHOD_INSN) {
+							MethodInsnNode call = (MethodInsnNode)n;
+							builder.addCall(call.owner, call.name, call.desc);
+						} else if (n.getType() == AbstractInsnNode.FIELD_INSN) {
+							FieldInsnNode f = (FieldInsnNode)n;
+							builder.addFieldAccess(f.owner, f.name, f.desc);
+						}
+					}
+				}
+				builder.endMethod();
+			}
+		}
+		for (int i=0; i<c.getFieldCount(); i++) {
+			FieldInfo f = c.getField(i);
+			if (isRegularField(f.getFieldName())) {
+				builder.addField(f.getFieldName(), f.getFieldTypeName());
+			}
+		}
+		builder.endClass();
+		return builder;
+	}
+	
+	
+	public static String getFieldSignature(FieldInfo f, boolean removePackage) {
+		SignatureBuilder.TokenBuffer buffer = new SignatureBuilder.TokenBuffer(64);
+		SignatureBuilder.appendFieldSignature(buffer, f.getFieldName(), f.getFieldTypeName(), removePackage);
+		return buffer.toString();
+	}
+	
+	
+	public static String getMethodSignature(MethodInfo m, boolean removePackage) {
+		MethodNode node = m.getMethodNode();
+		SignatureBuilder.TokenBuffer buffer = new SignatureBuilder.TokenBuffer(256);
+		SignatureBuilder.appendMethodSignature(buffer, m.getClassName(), node.access, node.name, node.desc, node.exceptions.toArray(new String[node.exceptions.size()]), removePackage);
+		return buffer.toString();
+	}
+	
+
+	public static String getMethodBodySignature(MethodNode node, boolean removePackage) {
+		SignatureBuilder.TokenBuffer tokens = new SignatureBuilder.TokenBuffer(1024);
+		InsnList instructions = node.instructions;
+		if (instructions != null) {
+			for (int i=0; i<instructions.size(); ++i) {
+				AbstractInsnNode n = instructions.get(i);
+				if (n.getType() == AbstractInsnNode.METHOD_INSN) {
+					MethodInsnNode m = (MethodInsnNode)n;
+					SignatureBuilder.appendCallSignature(tokens, m.owner, m.name, m.desc, removePackage);
+					tokens.endToken();
+				} else if (n.getType() == AbstractInsnNode.FIELD_INSN) {
+					FieldInsnNode f = (FieldInsnNode)n;
+					SignatureBuilder.appendFieldAccessSignature(tokens, f.owner, f.name, f.desc, removePackage);
+					tokens.endToken();
+				}
+			}
+		}
+		SignatureBuilder.TokenBuffer buffer = new SignatureBuilder.TokenBuffer(tokens.length() + tokens.size());
+		SignatureBuilder.appendSortedTokens(buffer, tokens);
+		return buffer.toString();
+	}
+	
+
+	
+	/**
+	 * The maximum number of entries in a cache of type names.
+	 */
+	static final int TYPE_CACHE_SIZE = Integer.getInteger("sarf.typecache", 1 << 16);
+	
+	private static final ConcurrentCache<String, String> normalizedTypes = new ConcurrentCache<>(TYPE_CACHE_SIZE);
+	private static final ConcurrentCache<String, String> normalizedTypesWithoutPackage = new ConcurrentCache<>(TYPE_CACHE_SIZE);
+
+	/**
+	 * Replace "$N" (an anonymous class) with "%A".
+	 * If removePackage is true, package names are also removed from a type name. 
+	 * A type name requiring no change is returned as is; 
+	 * otherwise, a normalized name is cached since the same types appear in many classes.
+	 */
+	public static String normalizeType(String typeName, boolean removePackage) {
+		if (typeName == null) return "";
+		if (!hasAnonymousInteger(typeName) && !(removePackage && typeName.indexOf('/') >= 0)) return typeName;
+
+		ConcurrentCache<String, String> cache = removePackage ? normalizedTypesWithoutPackage : normalizedTypes;
+		String normalized = cache.get(typeName);
+		if (normalized == null) {
+			if (removePackage) normalized = removeAnonymousInteger(removePackageFromType(typeName));
+			else normalized = removeAnonymousInteger(typeName);
+			cache.put(typeName, normalized);
+		}
+		return normalized;
+	}
+	
+	private static boolean isDigit(char c) {
+		return '0' <= c && c <= '9';
+	}
+	
+	private static boolean isIdentifierStart(char c) {
+		return ('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z') || c == '_' || c == '$';
+	}
+	
+	private static boolean hasAnonymousInteger(String name) {
+		for (int i=name.indexOf('$'); i >= 0; i=name.indexOf('$', i+1)) {
+			if (i+1 < name.length() && isDigit(name.charAt(i+1))) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * The same as replacing matches of a regular expression "\$([0-9]+)" with "%A".
+	 */
+	private static String removeAnonymousInteger(String className) {
+		if (!hasAnonymousInteger(className)) return className;
+		int length = className.length();
+		StringBuilder builder = new StringBuilder(length);
+		int i = 0;
+		while (i < length) {
+			char c = className.charAt(i);
+			if (c == '$' && i+1 < length && isDigit(className.charAt(i+1))) {
+				builder.append("%A");
+				i += 2;
+				while (i < length && isDigit(className.charAt(i))) i++;
+			} else {
+				builder.append(c);
+				i++;
+			}
+		}
+		return builder.toString();
+	}
+	
+	/**
+	 * The same as removing matches of a regular expression "[a-zA-Z_$][a-zA-Z_$0-9]*" followed by "/".
+	 * Since "/" is not an identifier character, a match starting with an identifier character
+	 * must include all the following identifier characters.
+	 */
+	private static String removePackageFromType(String desc) {
+		if (desc.indexOf('/') < 0) return desc;
+		int length = desc.length();
+		StringBuilder builder = new StringBuilder(length);
+		int i = 0;
+		while (i < length) {
+			char c = desc.charAt(i);
+			if (isIdentifierStart(c)) {
+				int end = i + 1;
+				while (end < length && (isIdentifierStart(desc.charAt(end)) || isDigit(desc.charAt(end)))) end++;
+				if (end < length && desc.charAt(end) == '/') {
+					i = end + 1; // remove a package name
+				} else {
+					builder.append(desc, i, end);
+					i = end;
+				}
+			} else {
+				builder.append(c);
+				i++;
+			}
+		}
+		return builder.toString();
+	}
+	
+	public static String concat(String header, ArrayList<String> signatures, String sep) {
+		StringBuilder builder = new StringBuilder(65536);
+		builder.append(header);
+		for (int i=0; i<signatures.size(); ++i) {
+			builder.append(sep);
+			builder.append(signatures.get(i));
+		}
+		 return builder.toString();
+	}
+
+}
@@ -0,0 +1,463 @@
+package sarf.jingredients.model;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.security.MessageDigest;
+
+import org.objectweb.asm.Opcodes;
+
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.util.ConcurrentCache;
+import soba.core.signature.MethodSignatureReader;
+import soba.core.signature.TypeResolver;
+
+/**
+ * Builds the code signature and the Software Bertillonage signature of a class.
+ * Signatures of members, method calls and field accesses are written to reusable character buffers
+ * and sorted as references to the buffers.
+ * Their hash values are computed by feeding the buffers to a digest,
+ * so that building signatures of a class allocates few objects.
+ * A class is given by the following method calls:
+ * startClass ( startMethod ( addCall | addFieldAccess )* endMethod | addField )* endClass.
+ * An instance is not thread-safe; getInstance() returns an instance for the current thread.
+ */
+class SignatureBuilder {
+
+	private static final ConcurrentCache<String, String[]> methodTypes = new ConcurrentCache<>(Signature.TYPE_CACHE_SIZE);
+
+	private static final ThreadLocal<SignatureBuilder> instances = new ThreadLocal<SignatureBuilder>() {
+		@Override
+		protected SignatureBuilder initialValue() {
+			return new SignatureBuilder();
+		}
+	};
+
+	/**
+	 * @return a builder for the current thread.
+	 */
+	public static SignatureBuilder getInstance() {
+		return instances.get();
+	}
+
+	private boolean removePackage;
+	private String className;
+	private String superClassName;
+	private String[] interfaces;
+
+	private TokenBuffer davies = new TokenBuffer(4096);
+	private TokenBuffer code = new TokenBuffer(4096);
+	private TokenBuffer members = new TokenBuffer(4096);
+	private TokenBuffer body = new TokenBuffer(1024);
+	private TokenBuffer names = new TokenBuffer(256);
+	private int methodStart;
+
+	private MessageDigest digest = Component.getAlgorithm();
+	private CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private ByteBuffer bytes = ByteBuffer.allocate(8192);
+
+	private SignatureBuilder() {
+	}
+
+	/**
+	 * Start a new class.
+	 * @param removePackage is applied to the code signature.
+	 */
+	public void startClass(String className, String superClassName, String[] interfaces, boolean removePackage) {
+		this.className = className;
+		this.superClassName = superClassName;
+		this.interfaces = interfaces;
+		this.removePackage = removePackage;
+		members.clear();
+		body.clear();
+		code.clear();
+
+		davies.clear();
+		davies.append(Signature.normalizeType(className, false));
+		davies.append(';');
+		davies.append(Signature.normalizeType(Signature.normalizeType(superClassName, false), true));
+		appendSortedNames(davies, interfaces, true);
+	}
+
+	/**
+	 * Start a regular method.
+	 * @param exceptions may be null.
+	 */
+	public void startMethod(int access, String name, String desc, String[] exceptions) {
+		methodStart = members.length();
+		appendMethodSignature(members, className, access, name, desc, exceptions, removePackage);
+		davies.append(';');
+		if (removePackage) {
+			appendMethodSignature(davies, className, access, name, desc, exceptions, false);
+		} else {
+			davies.append(members, methodStart, members.length());
+		}
+		members.append('[');
+		body.clear();
+	}
+
+	public void addCall(String owner, String name, String desc) {
+		appendCallSignature(body, owner, name, desc, removePackage);
+		body.endToken();
+	}
+
+	public void addFieldAccess(String owner, String name, String desc) {
+		appendFieldAccessSignature(body, owner, name, desc, removePackage);
+		body.endToken();
+	}
+
+	public void endMethod() {
+		appendSortedTokens(members, body);
+		members.append(']');
+		members.endToken();
+	}
+
+	/**
+	 * Add a regular field.
+	 * @param typeName is a type name resolved by TypeResolver.
+	 */
+	public void addField(String name, String typeName) {
+		appendFieldSignature(members, name, typeName, removePackage);
+		members.endToken();
+	}
+
+	public void endClass() {
+		code.append(Signature.normalizeType(className, removePackage));
+		code.append(';');
+		code.append(Signature.normalizeType(superClassName, removePackage));
+		appendSortedNames(code, interfaces, removePackage);
+		members.sort();
+		for (int i=0; i<members.size(); ++i) {
+			code.append(';');
+			code.append(members, members.getStart(i), members.getEnd(i));
+		}
+	}
+
+	public String getClassSignature() {
+		return code.toString();
+	}
+
+	public String getDaviesClassSignature() {
+		return davies.toString();
+	}
+
+	/**
+	 * @return the same hash value as new ClassHash(getClassSignature()).
+	 */
+	public ClassHash getClassHash() {
+		return getHash(code);
+	}
+
+	/**
+	 * @return the same hash value as new ClassHash(getDaviesClassSignature()).
+	 */
+	public ClassHash getDaviesClassHash() {
+		return getHash(davies);
+	}
+
+	/**
+	 * Compute a hash value in the same way as ClassHash.getStringHash,
+	 * that encodes a string in the default charset.
+	 */
+	private ClassHash getHash(TokenBuffer buffer) {
+		CharBuffer in = buffer.asCharBuffer();
+		encoder.reset();
+		CoderResult r;
+		do {
+			r = encoder.encode(in, bytes, true);
+			updateDigest();
+		} while (r.isOverflow());
+		do {
+			r = encoder.flush(bytes);
+			updateDigest();
+		} while (r.isOverflow());
+		return new ClassHash(digest.digest());
+	}
+
+	private void updateDigest() {
+		bytes.flip();
+		digest.update(bytes);
+		bytes.clear();
+	}
+
+	private void appendSortedNames(TokenBuffer buffer, String[] types, boolean removePackage) {
+		names.clear();
+		if (types != null) {
+			for (String t: types) {
+				names.append(Signature.normalizeType(t, removePackage));
+				names.endToken();
+			}
+		}
+		names.sort();
+		for (int i=0; i<names.size(); ++i) {
+			buffer.append(';');
+			buffer.append(names, names.getStart(i), names.getEnd(i));
+		}
+	}
+
+	/**
+	 * Append sorted tokens followed by ";".
+	 */
+	static void appendSortedTokens(TokenBuffer buffer, TokenBuffer tokens) {
+		tokens.sort();
+		for (int i=0; i<tokens.size(); ++i) {
+			buffer.append(tokens, tokens.getStart(i), tokens.getEnd(i));
+			buffer.append(';');
+		}
+	}
+
+	/**
+	 * @return the return type followed by the parameter types of a method descriptor.
+	 * The type names are resolved by MethodSignatureReader and cached,
+	 * since the same descriptors appear in many method calls.
+	 */
+	static String[] getMethodTypes(String desc) {
+		String[] types = methodTypes.get(desc);
+		if (types == null) {
+			MethodSignatureReader reader = new MethodSignatureReader(desc);
+			types = new String[reader.getParamCount() + 1];
+			types[0] = reader.getReturnType();
+			for (int p=0; p<reader.getParamCount(); ++p) {
+				types[p+1] = reader.getParamType(p);
+			}
+			methodTypes.put(desc, types);
+		}
+		return types;
+	}
+
+	/**
+	 * Like MethodInfo, the owner class is regarded as the first parameter of an instance method.
+	 */
+	static void appendMethodSignature(TokenBuffer buffer, String className, int access, String name, String desc, String[] exceptions, boolean removePackage) {
+		buffer.append(name);
+		buffer.append(Signature.METHOD_SEPARATOR);
+		boolean isStatic = (access & Opcodes.ACC_STATIC) != 0;
+		if (isStatic) buffer.append("static");
+		if ((access & Opcodes.ACC_PUBLIC) != 0) buffer.append("public");
+		if ((access & Opcodes.ACC_PROTECTED) != 0) buffer.append("protected");
+		if ((access & Opcodes.ACC_PRIVATE) != 0) buffer.append("private");
+		if ((access & Opcodes.ACC_SYNCHRONIZED) != 0) buffer.append("synchronized");
+		buffer.append(Signature.METHOD_SEPARATOR);
+		if (exceptions != null) {
+			for (String s: exceptions) {
+				buffer.append(Signature.normalizeType(s, removePackage));
+				buffer.append(';');
+			}
+		}
+		buffer.append(Signature.METHOD_SEPARATOR);
+		String[] types = getMethodTypes(desc);
+		buffer.append(Signature.normalizeType(types[0], removePackage));
+		if (!isStatic) {
+			buffer.append(Signature.METHOD_SEPARATOR);
+			buffer.append(Signature.normalizeType(className, removePackage));
+		}
+		for (int i=1; i<types.length; ++i) {
+			buffer.append(Signature.METHOD_SEPARATOR);
+			buffer.append(Signature.normalizeType(types[i], removePackage));
+		}
+	}
+
+	static void appendFieldSignature(TokenBuffer buffer, String name, String typeName, boolean removePackage) {
+		buffer.append(name);
+		buffer.append(Signature.METHOD_SEPARATOR);
+		buffer.append(Signature.normalizeType(typeName, removePackage));
+	}
+
+	static void appendCallSignature(TokenBuffer buffer, String owner, String name, String desc, boolean removePackage) {
+		buffer.append(Signature.normalizeType(owner, removePackage));
+		buffer.append('#');
+		buffer.append(name);
+		String[] types = getMethodTypes(desc);
+		for (int p=1; p<types.length; ++p) {
+			buffer.append('#');
+			buffer.append(Signature.normalizeType(types[p], removePackage));
+		}
+	}
+
+	static void appendFieldAccessSignature(TokenBuffer buffer, String owner, String name, String desc, boolean removePackage) {
+		buffer.append(Signature.normalizeType(owner, removePackage));
+		buffer.append('#');
+		buffer.append(name);
+		buffer.append('#');
+		buffer.append(Signature.normalizeType(TypeResolver.getTypeName(desc), removePackage));
+	}
+
+
+	/**
+	 * A growable character buffer divided into tokens.
+	 * Tokens are sorted in the order of String.compareTo without creating String objects.
+	 */
+	static class TokenBuffer {
+
+		private char[] chars;
+		private int length;
+		private CharBuffer charBuffer;
+
+		/**
+		 * bounds[i] and bounds[i+1] are the start and the end of the i-th token.
+		 */
+		private int[] bounds = new int[64];
+		private int count;
+		private int[] order = new int[64];
+		private int[] work = new int[64];
+		private boolean sorted;
+
+		public TokenBuffer(int capacity) {
+			chars = new char[capacity];
+		}
+
+		public void clear() {
+			length = 0;
+			count = 0;
+			sorted = false;
+		}
+
+		public int length() {
+			return length;
+		}
+
+		/**
+		 * @return the number of tokens.
+		 * Characters after the last endToken() are not included in a token.
+		 */
+		public int size() {
+			return count;
+		}
+
+		public void append(char c) {
+			ensureCapacity(length + 1);
+			chars[length++] = c;
+		}
+
+		public void append(String s) {
+			int n = s.length();
+			ensureCapacity(length + n);
+			s.getChars(0, n, chars, length);
+			length += n;
+		}
+
+		/**
+		 * Append a range of characters in another buffer.
+		 */
+		public void append(TokenBuffer another, int start, int end) {
+			int n = end - start;
+			ensureCapacity(length + n);
+			System.arraycopy(another.chars, start, chars, length, n);
+			length += n;
+		}
+
+		/**
+		 * Regard the characters after the previous token as a token.
+		 */
+		public void endToken() {
+			if (count + 2 > bounds.length) {
+				int[] newBounds = new int[bounds.length * 2];
+				System.arraycopy(bounds, 0, newBounds, 0, count + 1);
+				bounds = newBounds;
+			}
+			bounds[++count] = length;
+			sorted = false;
+		}
+
+		/**
+		 * Sort tokens.  getStart(i) and getEnd(i) then return the i-th token in the sorted order.
+		 */
+		public void sort() {
+			if (order.length < count) {
+				order = new int[bounds.length];
+				work = new int[bounds.length];
+			}
+			for (int i=0; i<count; ++i) {
+				order[i] = i;
+			}
+			mergeSort(0, count);
+			sorted = true;
+		}
+
+		public int getStart(int index) {
+			return bounds[sorted ? order[index] : index];
+		}
+
+		public int getEnd(int index) {
+			return bounds[(sorted ? order[index] : index) + 1];
+		}
+
+		private void mergeSort(int from, int to) {
+			if (to - from <= 8) {
+				for (int i=from+1; i<to; ++i) {
+					int t = order[i];
+					int j = i;
+					while (j > from && compare(order[j-1], t) > 0) {
+						order[j] = order[j-1];
+						j--;
+					}
+					order[j] = t;
+				}
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			mergeSort(from, mid);
+			mergeSort(mid, to);
+			if (compare(order[mid-1], order[mid]) <= 0) return;
+			System.arraycopy(order, from, work, from, to - from);
+			int i = from;
+			int j = mid;
+			for (int k=from; k<to; ++k) {
+				if (j >= to || (i < mid && compare(work[i], work[j]) <= 0)) {
+					order[k] = work[i++];
+				} else {
+					order[k] = work[j++];
+				}
+			}
+		}
+
+		/**
+		 * Compare two tokens in the same way as String.compareTo.
+		 */
+		private int compare(int t1, int t2) {
+			int p1 = bounds[t1];
+			int len1 = bounds[t1 + 1] - p1;
+			int p2 = bounds[t2];
+			int len2 = bounds[t2 + 1] - p2;
+			int n = Math.min(len1, len2);
+			for (int k=0; k<n; ++k) {
+				char c1 = chars[p1 + k];
+				char c2 = chars[p2 + k];
+				if (c1 != c2) return c1 - c2;
+			}
+			return len1 - len2;
+		}
+
+		private void ensureCapacity(int capacity) {
+			if (capacity > chars.length) {
+				char[] newChars = new char[Math.max(capacity, chars.length * 2)];
+				System.arraycopy(chars, 0, newChars, 0, length);
+				chars = newChars;
+				charBuffer = null;
+			}
+		}
+
+		/**
+		 * @return a buffer sharing the characters.
+		 */
+		public CharBuffer asCharBuffer() {
+			if (charBuffer == null) {
+				charBuffer = CharBuffer.wrap(chars);
+			}
+			charBuffer.limit(length);
+			charBuffer.position(0);
+			return charBuffer;
+		}
+
+		@Override
+		public String toString() {
+			return new String(chars, 0, length);
+		}
+	}
+
+}
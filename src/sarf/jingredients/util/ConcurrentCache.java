@@ -0,0 +1,38 @@
+package sarf.jingredients.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A map shared by threads to cache computed values.
+ * The number of entries is bounded; the map is cleared when the number reaches the limit,
+ * and frequently used entries are soon added again.
+ * This is cheaper than a least-recently-used policy, which requires synchronization for every access.
+ */
+public class ConcurrentCache<K, V> {
+
+	private ConcurrentHashMap<K, V> map;
+	private int maxSize;
+
+	/**
+	 * @param maxSize specifies the maximum number of entries.
+	 */
+	public ConcurrentCache(int maxSize) {
+		this.map = new ConcurrentHashMap<>();
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return a cached value, or null if the key is not in the cache.
+	 */
+	public V get(K key) {
+		return map.get(key);
+	}
+
+	public void put(K key, V value) {
+		if (map.size() >= maxSize) {
+			map.clear();
+		}
+		map.put(key, value);
+	}
+
+}
@@ -1,16 +1,16 @@
-package sarf.jingredients.util;
-
-public class Timer {
-	
-	private long t;
-	
-	public Timer() {
-		t = System.currentTimeMillis();
-	}
-	
-	public void printTime(String message) {
-		System.out.println(message + (System.currentTimeMillis() - t));
-		t = System.currentTimeMillis();
-	}
-
-}
+package sarf.jingredients.util;
+
+public class Timer {
+	
+	private long t;
+	
+	public Timer() {
+		t = System.currentTimeMillis();
+	}
+	
+	public void printTime(String message) {
+		System.out.println(message + (System.currentTimeMillis() - t));
+		t = System.currentTimeMillis();
+	}
+
+}
@@ -0,0 +1,61 @@
+package sarf.jingredients;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+import sarf.jingredients.db.DeltaClassHashSetWriter;
+import sarf.jingredients.db.InvertedIndex;
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.hash.ClassHashSet;
+import sarf.jingredients.model.ComponentEntry;
+
+public class CreateDBTest {
+
+	private static ClassHash hash(int prefix, int suffix) {
+		byte[] array = new byte[ClassHash.SHA1LENGTH];
+		array[0] = (byte)prefix;
+		array[19] = (byte)suffix;
+		return new ClassHash(array);
+	}
+
+	@Test
+	public void testIndexWithFingerprintFiles() throws IOException {
+		File dir = Files.createTempDirectory("jingredients").toFile();
+		String dbname = new File(dir, "db").getAbsolutePath();
+		int sig = ComponentEntry.SIG_CODE;
+		try {
+			// The two jar files share fingerprints but no full hash values
+			ArrayList<ClassHash> jar0 = new ArrayList<>();
+			ArrayList<ClassHash> jar1 = new ArrayList<>();
+			for (int i=0; i<10; ++i) {
+				jar0.add(hash(i, 0));
+				jar1.add(hash(i, 1));
+			}
+			DeltaClassHashSetWriter w = new DeltaClassHashSetWriter(new File(dbname + CreateDB.SignatureTypeName[sig]), 1);
+			w.add(jar0);
+			w.add(jar1);
+			w.close();
+
+			// An index is created from full hash values even if fingerprint files exist
+			CreateDB.createFingerprint(dbname, sig);
+			CreateDB.createIndex(dbname, sig);
+			InvertedIndex index = new InvertedIndex(new File[] { new File(dbname + CreateDB.IndexTypeName[sig]) });
+			TIntIntHashMap counts = index.countIntersections(new ClassHashSet(jar0));
+			Assert.assertEquals(1, counts.size());
+			Assert.assertEquals(jar0.size(), counts.get(0));
+			Assert.assertTrue(index.contains(hash(0, 1)));
+		} finally {
+			for (File f: dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+package sarf.jingredients;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import sarf.jingredients.model.Component;
+import sarf.jingredients.model.ComponentEntry;
+
+public class DatabaseTest {
+
+	private static final String[] JARS = { "lib/asm-debug-all-5.0.3.jar", "lib/soba-core-0.1.0.jar", "lib/trove-3.0.2.jar" };
+
+	/**
+	 * Copy at most limit class files of a jar file to a target.
+	 */
+	private static void copyClasses(File jar, int limit, ZipOutputStream out) throws IOException {
+		ZipFile zip = new ZipFile(jar);
+		try {
+			int count = 0;
+			for (Enumeration<? extends ZipEntry> it = zip.entries(); it.hasMoreElements() && count < limit; ) {
+				ZipEntry e = it.nextElement();
+				if (!e.getName().endsWith(".class")) continue;
+				out.putNextEntry(new ZipEntry(e.getName()));
+				InputStream in = zip.getInputStream(e);
+				byte[] buf = new byte[4096];
+				for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+					out.write(buf, 0, n);
+				}
+				in.close();
+				out.closeEntry();
+				count++;
+			}
+		} finally {
+			zip.close();
+		}
+	}
+
+	private static ArrayList<String> analyze(String dbname, Component target, double minOverlap, CandidateStatistics stats) throws IOException {
+		Database db = new Database(new String[] { dbname }, ComponentEntry.SIG_CODE);
+		db.setMinOverlap(minOverlap);
+		ArrayList<String> reports = new ArrayList<>();
+		for (Report r: db.analyzeIngredients(target, false, stats)) {
+			reports.add(r.toString());
+		}
+		return reports;
+	}
+
+	@Test
+	public void testMaxCandidateSize() {
+		Assert.assertEquals(100, Database.maxCandidateSize(100, 30, 0));
+		Assert.assertEquals(100, Database.maxCandidateSize(100, 100, 0.5));
+		for (int candidates=0; candidates<50; ++candidates) {
+			for (double minOverlap: new double[] { 0.1, 0.3, 1.0/3, 0.5, 0.7, 1 }) {
+				int size = Database.maxCandidateSize(100, candidates, minOverlap);
+				Assert.assertTrue(size <= 100);
+				Assert.assertTrue(size == 0 || candidates * 1.0 / size >= minOverlap);
+				Assert.assertTrue(size == 100 || candidates * 1.0 / (size + 1) < minOverlap);
+			}
+		}
+	}
+
+	@Test
+	public void testPrunedCandidates() throws IOException {
+		File dir = Files.createTempDirectory("jingredients").toFile();
+		try {
+			File list = new File(dir, "list.txt");
+			PrintWriter w = new PrintWriter(list);
+			for (String jar: JARS) {
+				w.println(new File(jar).getAbsolutePath());
+			}
+			w.close();
+			String scanned = new File(dir, "scan").getAbsolutePath();
+			String indexed = new File(dir, "index").getAbsolutePath();
+			CreateDB.main(new String[] { list.getAbsolutePath(), scanned, "2" });
+			CreateDB.main(new String[] { list.getAbsolutePath(), indexed, "2", "-index" });
+
+			// The target includes soba, a part of asm and a few classes of trove that is larger than the target
+			File targetFile = new File(dir, "target.jar");
+			ZipOutputStream out = new ZipOutputStream(new FileOutputStream(targetFile));
+			copyClasses(new File(JARS[1]), Integer.MAX_VALUE, out);
+			copyClasses(new File(JARS[0]), 40, out);
+			copyClasses(new File(JARS[2]), 10, out);
+			out.close();
+			Component target = Component.load(targetFile, true);
+
+			for (double minOverlap: new double[] { 0, 0.5 }) {
+				CandidateStatistics scanStats = new CandidateStatistics();
+				CandidateStatistics indexStats = new CandidateStatistics();
+				ArrayList<String> scanReports = analyze(scanned, target, minOverlap, scanStats);
+				ArrayList<String> indexReports = analyze(indexed, target, minOverlap, indexStats);
+				Assert.assertEquals(scanReports, indexReports);
+				Assert.assertEquals(scanStats.getCandidateCount(), indexStats.getCandidateCount());
+				// trove is excluded by its size; asm is excluded by the overlap threshold
+				Assert.assertEquals(minOverlap > 0 ? 1 : 2, indexStats.getCandidateCount());
+				Assert.assertTrue(indexReports.get(0).contains("soba-core"));
+				Assert.assertEquals(minOverlap > 0 ? 1 : 2, indexReports.size());
+			}
+		} finally {
+			for (File f: dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+	}
+
+}
@@ -0,0 +1,52 @@
+package sarf.jingredients;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.hash.ClassHashSet;
+
+public class TargetSubsetTest {
+
+	private static ClassHashSet randomSet(Random rand, int size) {
+		ArrayList<ClassHash> list = new ArrayList<>(size);
+		for (int i=0; i<size; ++i) {
+			byte[] array = new byte[ClassHash.SHA1LENGTH];
+			array[0] = (byte)rand.nextInt(100); // some values appear multiple times
+			array[19] = (byte)rand.nextInt(2);
+			list.add(new ClassHash(array));
+		}
+		return new ClassHashSet(list);
+	}
+
+	@Test
+	public void testSameAsClassHashSet() {
+		Random rand = new Random(0);
+		for (int trial=0; trial<100; ++trial) {
+			ClassHashSet target = randomSet(rand, rand.nextInt(300));
+			ClassHashSet s1 = target.getIntersectionSet(randomSet(rand, rand.nextInt(200)));
+			ClassHashSet s2 = target.getIntersectionSet(randomSet(rand, rand.nextInt(200)));
+			TargetSubset full = new TargetSubset(target);
+			TargetSubset t1 = full.createSubset(s1);
+			TargetSubset t2 = full.createSubset(s2);
+			Assert.assertEquals(target.size(), full.size());
+			Assert.assertEquals(s1.size(), t1.size());
+			Assert.assertTrue(s1.equals(t1.toClassHashSet()));
+			Assert.assertEquals(s1.equals(s2), t1.equals(t2));
+
+			TargetSubset retained = full.createSubset(s1);
+			retained.retainAll(t2);
+			Assert.assertTrue(s1.getIntersectionSet(s2).equals(retained.toClassHashSet()));
+
+			s1.removeAll(s2);
+			t1.removeAll(t2);
+			Assert.assertEquals(s1.size(), t1.size());
+			Assert.assertTrue(s1.equals(t1.toClassHashSet()));
+			Assert.assertTrue(t1.equals(full.createSubset(s1)));
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+package sarf.jingredients.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.hash.ClassHashSet;
+
+public class DictionaryClassHashSetListTest {
+
+	private static final double DELTA = 0.0001;
+
+	private static ClassHashSet randomSet(Random rand, int size) {
+		ArrayList<ClassHash> list = new ArrayList<>(size);
+		for (int i=0; i<size; ++i) {
+			byte[] array = new byte[ClassHash.SHA1LENGTH];
+			array[0] = (byte)rand.nextInt(256); // some values appear in multiple sets
+			array[19] = (byte)rand.nextInt(2);
+			list.add(new ClassHash(array));
+		}
+		return new ClassHashSet(list);
+	}
+
+	@Test
+	public void testMultipleDictionaries() throws IOException {
+		Random rand = new Random(0);
+		File dir = Files.createTempDirectory("jingredients").toFile();
+		try {
+			// Shards have different dictionaries sharing some hash values
+			int shards = 3;
+			InMemoryClassHashSetList all = new InMemoryClassHashSetList();
+			File[] dictionaryFiles = new File[shards];
+			File[] idFiles = new File[shards];
+			for (int k=0; k<shards; ++k) {
+				ArrayList<ClassHashSet> sets = new ArrayList<>();
+				for (int i=0; i<20; ++i) {
+					sets.add(randomSet(rand, rand.nextInt(50)));
+				}
+				InMemoryClassHashSetList shard = new InMemoryClassHashSetList();
+				shard.addAll(sets);
+				all.addAll(sets);
+				dictionaryFiles[k] = new File(dir, k + ".dict");
+				idFiles[k] = new File(dir, k + ".ids");
+				DictionaryClassHashSetList.write(shard, dictionaryFiles[k], idFiles[k]);
+			}
+
+			DictionaryClassHashSetList dataset = new DictionaryClassHashSetList(dictionaryFiles, idFiles);
+			Assert.assertEquals(all.size(), dataset.size());
+			for (int trial=0; trial<20; ++trial) {
+				ClassHashSet target = randomSet(rand, rand.nextInt(200));
+				ClassHashSetList.Query expected = all.prepare(target);
+				ClassHashSetList.Query actual = dataset.prepare(target);
+				for (int i=0; i<all.size(); ++i) {
+					Assert.assertTrue(all.get(i).equals(dataset.get(i)));
+					Assert.assertEquals(expected.overlap(i), actual.overlap(i), DELTA);
+					Assert.assertEquals(expected.overlap(i, 0.5), actual.overlap(i, 0.5), DELTA);
+					Assert.assertTrue(expected.getIntersectionSet(i).equals(actual.getIntersectionSet(i)));
+				}
+			}
+		} finally {
+			for (File f: dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+package sarf.jingredients.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.hash.ClassHashSet;
+
+public class MinHashIndexTest {
+
+	private static ClassHash randomHash(Random rand) {
+		byte[] array = new byte[ClassHash.SHA1LENGTH];
+		rand.nextBytes(array);
+		return new ClassHash(array);
+	}
+
+	@Test
+	public void testExactTopMatch() throws IOException {
+		Random rand = new Random(0);
+		File dir = Files.createTempDirectory("jingredients").toFile();
+		File file = new File(dir, "db.bert.lsh");
+		try {
+			// Jar files share a pool of common classes, so that many of them are similar to a target
+			ArrayList<ClassHash> common = new ArrayList<>();
+			for (int i=0; i<200; ++i) {
+				common.add(randomHash(rand));
+			}
+			ArrayList<ClassHashSet> sets = new ArrayList<>();
+			for (int jar=0; jar<300; ++jar) {
+				ArrayList<ClassHash> list = new ArrayList<>();
+				for (int i=0; i<100; ++i) {
+					list.add(rand.nextInt(4) == 0 ? common.get(rand.nextInt(common.size())) : randomHash(rand));
+				}
+				sets.add(new ClassHashSet(list));
+			}
+			InMemoryClassHashSetList dataset = new InMemoryClassHashSetList();
+			dataset.addAll(sets);
+			MinHashIndex.write(dataset, file, MinHashIndex.DEFAULT_HASH_COUNT, MinHashIndex.DEFAULT_BAND_COUNT);
+			MinHashIndex index = new MinHashIndex(new File[] { file });
+			Assert.assertEquals(sets.size(), index.getJarCount());
+
+			for (int trial=0; trial<20; ++trial) {
+				// A target is a modified copy of a jar file
+				int answer = rand.nextInt(sets.size());
+				ArrayList<ClassHash> list = new ArrayList<>();
+				for (ClassHash h: sets.get(answer)) {
+					list.add(rand.nextInt(5) == 0 ? common.get(rand.nextInt(common.size())) : h);
+				}
+				ClassHashSet target = new ClassHashSet(list);
+
+				// The exact top match by the Jaccard index
+				int top = -1;
+				double topJaccard = -1;
+				for (int jar=0; jar<sets.size(); ++jar) {
+					int intersection = target.intersection(sets.get(jar));
+					double jaccard = intersection * 1.0 / (target.size() + sets.get(jar).size() - intersection);
+					if (jaccard > topJaccard) {
+						top = jar;
+						topJaccard = jaccard;
+					}
+				}
+				Assert.assertEquals(answer, top);
+
+				TIntIntHashMap candidates = index.findCandidates(index.computeSignature(target), 1);
+				Assert.assertTrue(candidates.containsKey(top));
+				for (int jar: candidates.keys()) {
+					Assert.assertTrue(candidates.get(jar) <= candidates.get(top));
+				}
+			}
+		} finally {
+			file.delete();
+			dir.delete();
+		}
+	}
+
+}
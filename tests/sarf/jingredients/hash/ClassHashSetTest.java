@@ -0,0 +1,179 @@
+package sarf.jingredients.hash;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClassHashSetTest {
+
+	private static final double DELTA = 0.0001;
+
+	private static ClassHash hash(int prefix, int suffix) {
+		byte[] array = new byte[ClassHash.SHA1LENGTH];
+		array[0] = (byte)prefix;
+		array[19] = (byte)suffix;
+		return new ClassHash(array);
+	}
+
+	private static ClassHashSet set(ClassHash... hashes) {
+		ArrayList<ClassHash> list = new ArrayList<>();
+		Collections.addAll(list, hashes);
+		Collections.sort(list);
+		return new ClassHashSet(list);
+	}
+
+	@Test
+	public void testMultiset() {
+		ClassHash a = hash(1, 0);
+		ClassHash b = hash(1, 1); // the same key as a, different tail
+		ClassHash c = hash(-1, 0); // a large unsigned value
+		ClassHashSet s1 = set(a, a, b, c);
+		ClassHashSet s2 = set(a, b, b);
+		Assert.assertEquals(4, s1.size());
+		Assert.assertEquals(3, s1.distinctSize());
+		Assert.assertEquals(2, s1.count(a));
+		Assert.assertEquals(0, s2.count(c));
+
+		ClassHashSet i = s1.getIntersectionSet(s2);
+		Assert.assertEquals(2, i.size());
+		Assert.assertTrue(i.equals(set(a, b)));
+		Assert.assertEquals(2.0 / 3, s1.overlap(s2), DELTA);
+		Assert.assertTrue(s1.containsAll(set(a, a, c)));
+		Assert.assertFalse(s1.containsAll(s2));
+
+		s1.removeAll(s2);
+		Assert.assertTrue(s1.equals(set(a, c)));
+		Assert.assertEquals(2, s1.size());
+	}
+
+	@Test
+	public void testIteratorOrder() {
+		ArrayList<ClassHash> list = new ArrayList<>();
+		list.add(hash(-1, 0));
+		list.add(hash(0, 5));
+		list.add(hash(0, 5));
+		list.add(hash(127, 1));
+		ClassHashSet s = new ClassHashSet(list); // an unsorted list is accepted
+		ArrayList<ClassHash> visited = new ArrayList<>();
+		for (ClassHash h: s) {
+			visited.add(h);
+		}
+		Assert.assertEquals(3, visited.size());
+		Assert.assertEquals(hash(0, 5), visited.get(0));
+		Assert.assertEquals(hash(127, 1), visited.get(1));
+		Assert.assertEquals(hash(-1, 0), visited.get(2));
+	}
+
+	@Test
+	public void testRandomOperations() {
+		Random rand = new Random(0);
+		for (int trial=0; trial<200; ++trial) {
+			// Sets of quite different sizes exercise galloping search
+			ArrayList<ClassHash> l1 = randomList(rand, rand.nextInt(trial % 2 == 0 ? 20 : 2000));
+			ArrayList<ClassHash> l2 = randomList(rand, rand.nextInt(200));
+			TreeMap<ClassHash, Integer> m1 = toMap(l1);
+			TreeMap<ClassHash, Integer> m2 = toMap(l2);
+			ClassHashSet s1 = new ClassHashSet(l1);
+			ClassHashSet s2 = new ClassHashSet(l2);
+
+			int intersection = 0;
+			for (ClassHash h: m2.keySet()) {
+				Integer v = m1.get(h);
+				if (v != null) intersection += Math.min(v, m2.get(h));
+			}
+			Assert.assertEquals(intersection, s1.getIntersectionSet(s2).size());
+			Assert.assertEquals(intersection, s2.getIntersectionSet(s1).size());
+			Assert.assertEquals(intersection, s1.intersection(s2));
+			for (double threshold: new double[] { 0, 0.1, 0.5, 1 }) {
+				// Early termination never changes the result above the threshold
+				double overlap = s1.overlap(s2);
+				Assert.assertEquals(overlap >= threshold ? overlap : 0, s1.overlap(s2, threshold), DELTA);
+			}
+
+			s1.removeAll(s2);
+			for (ClassHash h: m2.keySet()) {
+				Integer v = m1.get(h);
+				if (v != null) {
+					if (v > m2.get(h)) m1.put(h, v - m2.get(h));
+					else m1.remove(h);
+				}
+			}
+			int size = 0;
+			for (ClassHash h: m1.keySet()) {
+				Assert.assertEquals(m1.get(h).intValue(), s1.count(h));
+				size += m1.get(h);
+			}
+			Assert.assertEquals(size, s1.size());
+			Assert.assertEquals(m1.size(), s1.distinctSize());
+		}
+	}
+
+	@Test
+	public void testFingerprint() {
+		ClassHash a = hash(1, 0);
+		ClassHash b = hash(1, 1); // the same fingerprint as a
+		ClassHash c = hash(2, 0);
+		ByteBuffer buffer = ByteBuffer.allocate(ClassHash.FINGERPRINT_LENGTH * 2);
+		buffer.put(0, (byte)1);
+		buffer.put(ClassHash.FINGERPRINT_LENGTH, (byte)3);
+		ClassHashSet fingerprints = ClassHashSet.readFromBuffer(buffer, 0, 2, ClassHash.FINGERPRINT_LENGTH);
+		Assert.assertTrue(fingerprints.isFingerprintSet());
+		Assert.assertEquals(2, fingerprints.size());
+		Assert.assertEquals(1, fingerprints.count(b));
+
+		// An intersection is a subset of the full set
+		ClassHashSet target = set(b, c);
+		ClassHashSet i = target.getIntersectionSet(fingerprints);
+		Assert.assertFalse(i.isFingerprintSet());
+		Assert.assertTrue(i.equals(set(b)));
+		Assert.assertEquals(0.5, target.overlap(fingerprints), DELTA);
+		Assert.assertEquals(0, set(a).getIntersectionSet(set(b)).size());
+		Assert.assertEquals(a.hashCode(), b.hashCode());
+	}
+
+	@Test
+	public void testDeltaEncoding() throws IOException {
+		Random rand = new Random(0);
+		ArrayList<ClassHashSet> sets = new ArrayList<>();
+		sets.add(set());
+		sets.add(set(hash(0, 0), hash(-1, -1), hash(-1, -1)));
+		for (int i=0; i<50; ++i) {
+			ArrayList<ClassHash> list = new ArrayList<>();
+			for (int k=rand.nextInt(1000); k>0; --k) {
+				byte[] h = new byte[ClassHash.SHA1LENGTH];
+				rand.nextBytes(h);
+				list.add(new ClassHash(h));
+				if (k % 10 == 0) list.add(new ClassHash(h));
+			}
+			sets.add(new ClassHashSet(list));
+		}
+		for (ClassHashSet s: sets) {
+			Assert.assertTrue(s.equals(ClassHashSet.decodeDelta(s.encodeDelta())));
+		}
+	}
+
+	private static ArrayList<ClassHash> randomList(Random rand, int size) {
+		ArrayList<ClassHash> list = new ArrayList<>(size);
+		for (int i=0; i<size; ++i) {
+			list.add(hash(rand.nextInt(256), rand.nextInt(4)));
+		}
+		Collections.sort(list);
+		return list;
+	}
+
+	private static TreeMap<ClassHash, Integer> toMap(ArrayList<ClassHash> list) {
+		TreeMap<ClassHash, Integer> map = new TreeMap<>();
+		for (ClassHash h: list) {
+			Integer v = map.get(h);
+			map.put(h, (v == null) ? 1 : v + 1);
+		}
+		return map;
+	}
+
+}
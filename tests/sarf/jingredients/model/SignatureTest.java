@@ -1,23 +1,167 @@
-package sarf.jingredients.model;
-
-
-import org.junit.Assert;
-import org.junit.Test;
-
-import sarf.jingredients.model.Signature;
-
-public class SignatureTest {
-
-	@Test
-	public void testNormalization() {
-		Assert.assertEquals("String", Signature.normalizeType("java/util/String", true));
-		Assert.assertEquals("String", Signature.normalizeType("package/String", true));
-		Assert.assertEquals("C", Signature.normalizeType("C", true));
-		Assert.assertEquals("C%A", Signature.normalizeType("package/C$1", true));
-		Assert.assertEquals("C%A%A", Signature.normalizeType("package/C$1$2", true));
-		Assert.assertEquals("C%A$Name", Signature.normalizeType("package/C$1$Name", true));
-		Assert.assertEquals("List<String>", Signature.normalizeType("java/util/List<java/lang/String>", true));
-		Assert.assertEquals("HashMap<String,ArrayList<String>>", Signature.normalizeType("java/util/HashMap<java/lang/String,java/util/ArrayList<java/lang/String>>", true));
-	}
-
-}
+package sarf.jingredients.model;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import sarf.jingredients.hash.ClassHash;
+import sarf.jingredients.hash.ClassHashSet;
+import sarf.jingredients.model.Signature;
+import soba.core.ClassInfo;
+
+public class SignatureTest {
+
+	@Test
+	public void testNormalization() {
+		Assert.assertEquals("String", Signature.normalizeType("java/util/String", true));
+		Assert.assertEquals("String", Signature.normalizeType("package/String", true));
+		Assert.assertEquals("C", Signature.normalizeType("C", true));
+		Assert.assertEquals("C%A", Signature.normalizeType("package/C$1", true));
+		Assert.assertEquals("C%A%A", Signature.normalizeType("package/C$1$2", true));
+		Assert.assertEquals("C%A$Name", Signature.normalizeType("package/C$1$Name", true));
+		Assert.assertEquals("List<String>", Signature.normalizeType("java/util/List<java/lang/String>", true));
+		Assert.assertEquals("HashMap<String,ArrayList<String>>", Signature.normalizeType("java/util/HashMap<java/lang/String,java/util/ArrayList<java/lang/String>>", true));
+	}
+
+	@Test
+	public void testNormalizationSameAsRegex() {
+		Random rand = new Random(0);
+		String chars = "aZ_$09/<>;[].-";
+		for (int trial=0; trial<10000; ++trial) {
+			StringBuilder name = new StringBuilder();
+			for (int k=rand.nextInt(12); k>0; --k) {
+				name.append(chars.charAt(rand.nextInt(chars.length())));
+			}
+			String s = name.toString();
+			Assert.assertEquals(s.replaceAll("\\$([0-9]+)", "%A"), Signature.normalizeType(s, false));
+			Assert.assertEquals(s.replaceAll("[a-zA-Z_$][a-zA-Z_$0-9]*/", "").replaceAll("\\$([0-9]+)", "%A"), Signature.normalizeType(s, true));
+		}
+	}
+
+	@Test
+	public void testClassSignatureReader() throws IOException {
+		for (Class<?> c: new Class<?>[] { Signature.class, Component.class, ClassHashSet.class, SignatureTest.class }) {
+			assertSameSignatures(readClass(c));
+		}
+	}
+
+	@Test
+	public void testSubroutine() throws IOException {
+		// A method calls a subroutine twice, as a finally block compiled by an old compiler
+		ClassWriter w = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		w.visit(Opcodes.V1_4, Opcodes.ACC_PUBLIC, "p/C", null, "java/lang/Object", null);
+		MethodVisitor mv = w.visitMethod(Opcodes.ACC_PUBLIC, "m", "()V", null, null);
+		mv.visitCode();
+		Label subroutine = new Label();
+		mv.visitJumpInsn(Opcodes.JSR, subroutine);
+		mv.visitJumpInsn(Opcodes.JSR, subroutine);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitLabel(subroutine);
+		mv.visitVarInsn(Opcodes.ASTORE, 1);
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/System", "gc", "()V", false);
+		mv.visitVarInsn(Opcodes.RET, 1);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+		w.visitEnd();
+		byte[] bytes = w.toByteArray();
+		assertSameSignatures(bytes);
+		ClassInfo c = new ClassInfo("C.class", new ByteArrayInputStream(bytes));
+		Assert.assertTrue(Signature.getClassSignature(c, false).contains("[java/lang/System#gc;java/lang/System#gc;]"));
+	}
+
+	@Test
+	public void testBrokenMethodBody() throws IOException {
+		// A branch to an offset outside of a method body is rejected as ClassInfo does,
+		// even if the method is excluded from the requested signatures
+		for (String name: new String[] { "m", "<init>" }) {
+			ClassWriter w = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+			w.visit(Opcodes.V1_5, Opcodes.ACC_PUBLIC, "p/C", null, "java/lang/Object", null);
+			MethodVisitor mv = w.visitMethod(Opcodes.ACC_PUBLIC, name, "()V", null, null);
+			mv.visitCode();
+			mv.visitIntInsn(Opcodes.SIPUSH, 0x1234);
+			mv.visitInsn(Opcodes.POP);
+			mv.visitInsn(Opcodes.RETURN);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+			w.visitEnd();
+			byte[] bytes = w.toByteArray();
+			for (int i=0; i+2<bytes.length; ++i) {
+				if (bytes[i] == Opcodes.SIPUSH && bytes[i+1] == 0x12 && bytes[i+2] == 0x34) {
+					bytes[i] = (byte)Opcodes.GOTO;
+				}
+			}
+			for (boolean[] requested: new boolean[][] { { true, true }, { true, false }, { false, true }, { false, false } }) {
+				try {
+					new ClassSignatureReader("C.class", bytes, requested[0], requested[1]);
+					Assert.fail("A broken method body is accepted: " + name);
+				} catch (RuntimeException e) {
+					// expected
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testTokenBufferSort() {
+		Random rand = new Random(0);
+		for (int trial=0; trial<20; ++trial) {
+			ArrayList<String> tokens = new ArrayList<>();
+			SignatureBuilder.TokenBuffer buffer = new SignatureBuilder.TokenBuffer(4);
+			for (int i=rand.nextInt(100); i>0; --i) {
+				StringBuilder t = new StringBuilder();
+				for (int k=rand.nextInt(4); k>0; --k) {
+					t.append((char)('a' + rand.nextInt(3)));
+				}
+				tokens.add(t.toString());
+				buffer.append(t.toString());
+				buffer.endToken();
+			}
+			Collections.sort(tokens);
+			buffer.sort();
+			Assert.assertEquals(tokens.size(), buffer.size());
+			for (int i=0; i<tokens.size(); ++i) {
+				Assert.assertEquals(tokens.get(i), buffer.toString().substring(buffer.getStart(i), buffer.getEnd(i)));
+			}
+		}
+	}
+
+	private static void assertSameSignatures(byte[] bytes) throws IOException {
+		ClassInfo c = new ClassInfo("C.class", new ByteArrayInputStream(bytes));
+		ClassSignatureReader reader = new ClassSignatureReader("C.class", bytes, true, true);
+		Assert.assertEquals(c.getClassName(), reader.getClassName());
+		Assert.assertEquals(c.getPackageName(), reader.getPackageName());
+		Assert.assertEquals(new ClassHash(Signature.getClassSignature(c, false)), reader.getClassHash());
+		Assert.assertEquals(new ClassHash(Signature.getDaviesClassSignature(c)), reader.getDaviesClassHash());
+
+		// A signature is computed only if it is requested
+		ClassSignatureReader davies = new ClassSignatureReader("C.class", bytes, false, true);
+		Assert.assertNull(davies.getClassHash());
+		Assert.assertEquals(reader.getDaviesClassHash(), davies.getDaviesClassHash());
+		Assert.assertEquals(reader.getClassHash(), new ClassSignatureReader("C.class", bytes, true, false).getClassHash());
+	}
+
+	private static byte[] readClass(Class<?> c) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try (InputStream stream = c.getResourceAsStream("/" + c.getName().replace('.', '/') + ".class")) {
+			byte[] buf = new byte[4096];
+			int n;
+			while ((n = stream.read(buf, 0, buf.length)) > 0) {
+				buffer.write(buf, 0, n);
+			}
+		}
+		return buffer.toByteArray();
+	}
+
+}